@@ -1,12 +1,28 @@
 package com.github.viktor235.gameretriever;
 
+import com.github.viktor235.gameretriever.command.BatchRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
 
 @SpringBootApplication
 public class GameRetrieverApplication {
 
+    /**
+     * Runs the application without the shell (see {@link BatchRunner})
+     */
+    private static final String BATCH_ARG = "--batch";
+
     public static void main(String[] args) {
+        if (Arrays.asList(args).contains(BATCH_ARG)) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(GameRetrieverApplication.class)
+                    .profiles(BatchRunner.PROFILE)
+                    .run(args);
+            System.exit(SpringApplication.exit(context));
+        }
         SpringApplication.run(GameRetrieverApplication.class, args);
     }
 }
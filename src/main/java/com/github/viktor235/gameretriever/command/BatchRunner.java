@@ -0,0 +1,104 @@
+package com.github.viktor235.gameretriever.command;
+
+import com.github.viktor235.gameretriever.exception.AppException;
+import com.github.viktor235.gameretriever.service.AuthService;
+import com.github.viktor235.gameretriever.service.ConverterService;
+import com.github.viktor235.gameretriever.service.GameGrabberService;
+import com.github.viktor235.gameretriever.service.LiquibaseService;
+import com.github.viktor235.gameretriever.service.helper.CompiledConverter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Non-interactive version of the 'wizard' command for scheduled runs. Settings are taken from <code>app.batch.*</code>
+ * properties, so they can be passed as arguments (<code>--app.batch.converter=rgg-assistant</code>) or by a config
+ * file (<code>--spring.config.additional-location=batch.properties</code>)
+ */
+@Slf4j
+@Component
+@Profile(BatchRunner.PROFILE)
+@RequiredArgsConstructor
+public class BatchRunner implements ApplicationRunner {
+
+    public static final String PROFILE = "batch";
+
+    private final AuthService authService;
+    private final GameGrabberService gameGrabberService;
+    private final LiquibaseService liquibaseService;
+    private final ConverterService converterService;
+
+    @Value(value = "${app.batch.update-platforms:true}")
+    private boolean updatePlatforms;
+    /**
+     * Platform ids to update games of. Empty means the saved selection
+     */
+    @Value(value = "${app.batch.platforms:}")
+    private Set<Long> platformIds;
+    @Value(value = "${app.batch.delta:false}")
+    private boolean delta;
+    @Value(value = "${app.batch.resume:false}")
+    private boolean resume;
+    /**
+     * Changelog of rows changed since the previous changelog
+     */
+    @Value(value = "${app.batch.incremental:false}")
+    private boolean incremental;
+    /**
+     * Converter name. Empty means no conversion
+     */
+    @Value(value = "${app.batch.converter:}")
+    private String converterName;
+    /**
+     * Result file of the converter. Empty means the converter output file
+     */
+    @Value(value = "${app.batch.output:}")
+    private String outputFile;
+
+    @Override
+    public void run(ApplicationArguments args) throws AppException {
+        Consumer<String> progressCallback = log::info;
+
+        if (!authService.hasCredentials()) {
+            throw new AppException("No IGDB credentials. Log in by 'auth' command in interactive mode first");
+        }
+
+        if (updatePlatforms) {
+            log.info("Updating the platforms");
+            gameGrabberService.grabPlatforms();
+        }
+        if (!platformIds.isEmpty()) {
+            gameGrabberService.setActivePlatforms(platformIds);
+        }
+
+        log.info("Updating the games");
+        if (delta) {
+            gameGrabberService.syncGames(progressCallback);
+        } else {
+            gameGrabberService.grabGames(resume, progressCallback);
+        }
+
+        log.info("Generating changelog file: " + liquibaseService.getChangelogFile());
+        liquibaseService.generateDataChangelog(incremental, progressCallback);
+
+        if (!converterName.isEmpty()) {
+            CompiledConverter converterCfg = converterService.getConverters().get(converterName);
+            if (converterCfg == null) {
+                throw new AppException("Unknown SQL converter '%s'".formatted(converterName));
+            }
+            if (!outputFile.isEmpty()) {
+                converterCfg = converterCfg.withOutputFile(outputFile);
+            }
+            log.info("Converting: '%s' -> '%s'".formatted(converterCfg.source(), converterCfg.outputFile()));
+            converterService.convert(converterCfg, progressCallback);
+        }
+        log.info("Done");
+    }
+}
@@ -2,12 +2,18 @@ package com.github.viktor235.gameretriever.command;
 
 import com.github.viktor235.gameretriever.exception.AppException;
 import com.github.viktor235.gameretriever.exception.AuthException;
-import com.github.viktor235.gameretriever.model.converter.Converter;
+import com.github.viktor235.gameretriever.model.ExportFormat;
+import com.github.viktor235.gameretriever.model.Job;
+import com.github.viktor235.gameretriever.model.JobResources;
 import com.github.viktor235.gameretriever.model.entity.Platform;
 import com.github.viktor235.gameretriever.service.AuthService;
 import com.github.viktor235.gameretriever.service.ConverterService;
+import com.github.viktor235.gameretriever.service.ExportService;
 import com.github.viktor235.gameretriever.service.GameGrabberService;
+import com.github.viktor235.gameretriever.service.IgdbService;
+import com.github.viktor235.gameretriever.service.JobService;
 import com.github.viktor235.gameretriever.service.LiquibaseService;
+import com.github.viktor235.gameretriever.service.helper.CompiledConverter;
 import com.github.viktor235.gameretriever.service.helper.FormatHelper;
 import com.github.viktor235.gameretriever.shell.ShellHelper;
 import com.github.viktor235.gameretriever.shell.Spinner;
@@ -19,6 +25,7 @@ import org.springframework.shell.standard.ShellOption;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static liquibase.repackaged.org.apache.commons.collections4.MapUtils.isEmpty;
@@ -29,8 +36,11 @@ public class GameRetrieverCommands {
 
     private final AuthService authService;
     private final GameGrabberService gameGrabberService;
+    private final IgdbService igdbService;
     private final LiquibaseService liquibaseService;
+    private final JobService jobService;
     private final ConverterService converterService;
+    private final ExportService exportService;
     private final ShellHelper shellHelper;
     private final FormatHelper formatHelper;
 
@@ -72,6 +82,7 @@ public class GameRetrieverCommands {
             shellHelper.printInfo("Platform updating skipped\n");
             return;
         }
+        jobService.checkAvailable(GameGrabberService.PLATFORMS_UPDATE);
 
         try (Spinner spinner = shellHelper.spinner("Updating the platforms")) {
             gameGrabberService.grabPlatforms();
@@ -95,24 +106,54 @@ public class GameRetrieverCommands {
     }
 
     @ShellMethod(key = "games update", value = "Grab games from selected platforms into local DB")
-    public void grabGames() throws AppException {
-        List<Platform> platforms = shellHelper.withSpinner("Preparing platform list",
-                () -> gameGrabberService.getPlatforms(false));
+    public void grabGames(
+            @ShellOption(value = {"delta", "-d"}, defaultValue = "false", help = "Request only games changed since the last update instead of all games")
+            boolean delta,
+            @ShellOption(value = {"resume", "-r"}, defaultValue = "false", help = "Continue the interrupted update from the last saved page. Platform selection is skipped")
+            boolean resume,
+            @ShellOption(value = {"background", "-b"}, defaultValue = "false", help = "Run as a background job. See 'jobs ls'")
+            boolean background
+    ) throws AppException {
+        // Platform selection is saved before the update
+        jobService.checkAvailable(resume
+                ? GameGrabberService.GAMES_UPDATE
+                : GameGrabberService.GAMES_UPDATE.with(GameGrabberService.PLATFORMS_UPDATE));
+        if (!resume) {
+            List<Platform> platforms = shellHelper.withSpinner("Preparing platform list",
+                    () -> gameGrabberService.getPlatforms(false));
+
+            showPlatforms(true);
 
-        showPlatforms(true);
+            List<Platform> chosenPlatforms = shellHelper.chooseMany("Select platforms to update games", platforms, Platform::getName, Platform::getActive);
+            shellHelper.withSpinner("Saving the selection",
+                    () -> gameGrabberService.setActivePlatforms(chosenPlatforms.stream()
+                            .map(Platform::getId)
+                            .collect(Collectors.toSet())));
+        }
 
-        List<Platform> chosenPlatforms = shellHelper.chooseMany("Select platforms to update games", platforms, Platform::getName, Platform::getActive);
-        shellHelper.withSpinner("Saving the selection",
-                () -> gameGrabberService.setActivePlatforms(chosenPlatforms.stream()
-                        .map(Platform::getId)
-                        .collect(Collectors.toSet())));
+        if (background) {
+            submitJob(delta ? "Games delta update" : "Games update", GameGrabberService.GAMES_UPDATE, progress -> {
+                if (delta) {
+                    gameGrabberService.syncGames(progress);
+                } else {
+                    gameGrabberService.grabGames(resume, progress);
+                }
+            });
+            return;
+        }
 
+        igdbService.resetThrottlingStats();
         try (Spinner spinner = shellHelper.spinner("Updating the games")) {
-            gameGrabberService.grabGames(spinner::setMessage);
+            if (delta) {
+                gameGrabberService.syncGames(spinner::setMessage);
+            } else {
+                gameGrabberService.grabGames(resume, spinner::setMessage);
+            }
         } catch (AuthException e) {
             shellHelper.printWarning("Unauthorized. Logging in:");
             auth(null, null, false);
-            grabGames();
+            // Saved pages are kept
+            grabGames(delta, true, false);
             return;
         }
 
@@ -120,23 +161,60 @@ public class GameRetrieverCommands {
         if (activePlatforms.isEmpty()) {
             shellHelper.printWarning("No platforms selected\n");
         } else {
-            shellHelper.printSuccess("Games updated for platforms: %s%n".formatted(
+            shellHelper.printSuccess("Games updated for platforms: %s".formatted(
                     formatHelper.getPlatformShortNames(activePlatforms)));
+            shellHelper.printInfo(formatHelper.getThrottlingStats(igdbService.getThrottlingStats()));
         }
     }
 
     @ShellMethod(key = "output changelog", value = "Store all platforms and games as SQL insert file")
-    public void generateChangelog() throws AppException {
+    public void generateChangelog(
+            @ShellOption(value = {"incremental", "-i"}, defaultValue = "false", help = "Store only platforms and games changed since the previous changelog")
+            boolean incremental,
+            @ShellOption(value = {"background", "-b"}, defaultValue = "false", help = "Run as a background job. See 'jobs ls'")
+            boolean background
+    ) throws AppException {
         String changelogFile = liquibaseService.getChangelogFile();
-        shellHelper.withSpinner("Generating changelog file: " + changelogFile,
-                liquibaseService::generateDataChangelog,
-                "DB changelog generated: " + changelogFile);
+        if (background) {
+            submitJob("Changelog generation: " + changelogFile, liquibaseService.getResources(),
+                    progress -> liquibaseService.generateDataChangelog(incremental, progress));
+            return;
+        }
+        jobService.checkAvailable(liquibaseService.getResources());
+        try (Spinner spinner = shellHelper.spinner("Generating changelog file: " + changelogFile)) {
+            liquibaseService.generateDataChangelog(incremental, spinner::setMessage);
+            spinner.success("DB changelog generated: " + changelogFile);
+        }
         shellHelper.println(formatHelper.getPlatformStats(gameGrabberService.getStats()));
     }
 
+    @ShellMethod(key = "output export", value = "Store platforms, games and their relations as JSON Lines or CSV files")
+    public void exportData(
+            @ShellOption(value = {"format", "-f"}, defaultValue = "JSONL", help = "File format: JSONL or CSV")
+            ExportFormat format,
+            @ShellOption(value = {"background", "-b"}, defaultValue = "false", help = "Run as a background job. See 'jobs ls'")
+            boolean background
+    ) throws AppException {
+        String exportDir = exportService.getExportDir();
+        if (background) {
+            submitJob("%s export: %s".formatted(format, exportDir), exportService.getResources(format),
+                    progress -> exportService.export(format, progress));
+            return;
+        }
+        jobService.checkAvailable(exportService.getResources(format));
+        try (Spinner spinner = shellHelper.spinner("Exporting %s files into '%s'".formatted(format, exportDir))) {
+            exportService.export(format, spinner::setMessage);
+            spinner.success("Data exported into '%s'".formatted(exportDir));
+        }
+        shellHelper.println();
+    }
+
     @ShellMethod(key = "output convert", value = "Convert changelog SQL file into result file. Converters located in 'converters/'")
-    public void convertSql() throws AppException {
-        Map<String, Converter> converters = converterService.getConverters();
+    public void convertSql(
+            @ShellOption(value = {"background", "-b"}, defaultValue = "false", help = "Run as a background job. See 'jobs ls'")
+            boolean background
+    ) throws AppException {
+        Map<String, CompiledConverter> converters = converterService.getConverters();
         if (isEmpty(converters)) {
             shellHelper.printWarning("No converters found in the folder 'converters/'. Converting skipped");
             return;
@@ -144,25 +222,60 @@ public class GameRetrieverCommands {
 
         converters.put("[don't convert]", null);
         String converterName = shellHelper.chooseOne("Select SQL converter (located in 'converters/')", converters.keySet());
-        Converter converterCfg = converters.get(converterName);
+        CompiledConverter converterCfg = converters.get(converterName);
         if (converterCfg == null) {
             shellHelper.printWarning("Conversion canceled\n");
             return;
         }
+        if (background) {
+            submitJob("Converting: '%s' -> '%s'".formatted(converterCfg.source(), converterCfg.outputFile()),
+                    converterCfg.resources(), progress -> converterService.convert(converterName, progress));
+            return;
+        }
+        jobService.checkAvailable(converterCfg.resources());
 
         try (Spinner spinner = shellHelper.spinner("Converting: '%s' -> '%s'"
-                .formatted(converterCfg.getInputFile(), converterCfg.getOutputFile()))) {
+                .formatted(converterCfg.source(), converterCfg.outputFile()))) {
             converterService.convert(converterName, spinner::setMessage);
-            spinner.success("Changelog converted. Result file: " + converterCfg.getOutputFile());
+            spinner.success("Changelog converted. Result file: " + converterCfg.outputFile());
         }
         shellHelper.println();
     }
 
+    @ShellMethod(key = "jobs ls", value = "Show background jobs")
+    public void showJobs() {
+        shellHelper.println(formatHelper.getJobList(jobService.getJobs()));
+    }
+
+    @ShellMethod(key = "jobs show", value = "Show background job progress")
+    public void showJob(
+            @ShellOption(help = "Job number")
+            int id
+    ) throws AppException {
+        shellHelper.println(formatHelper.getJob(jobService.getJob(id)));
+    }
+
+    @ShellMethod(key = "jobs cancel", value = "Cancel background job. Interrupted games update can be continued with 'games update --resume'")
+    public void cancelJob(
+            @ShellOption(help = "Job number")
+            int id
+    ) throws AppException {
+        Job job = jobService.cancel(id);
+        shellHelper.printWarning("Job #%d '%s' is canceling\n".formatted(job.getId(), job.getName()));
+    }
+
     @ShellMethod(key = "wizard", value = "Start interactive wizard. This is the easiest way to interact with the application")
     public void wizard() throws AppException {
         grabPlatforms();
-        grabGames();
-        generateChangelog();
-        convertSql();
+        grabGames(false, false, false);
+        generateChangelog(false, false);
+        convertSql(false);
+    }
+
+    private void submitJob(String name, JobResources resources, Consumer<Consumer<String>> action)
+            throws AppException {
+        Job job = jobService.submit(name, resources, action);
+        shellHelper.printSuccess("Job #%d '%s' submitted. Use 'jobs ls' to see the progress\n".formatted(
+                job.getId(), job.getName()));
     }
 }
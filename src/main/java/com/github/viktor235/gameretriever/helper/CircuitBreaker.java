@@ -0,0 +1,58 @@
+package com.github.viktor235.gameretriever.helper;
+
+import java.time.Duration;
+
+/**
+ * Stops calls after too many consecutive failures. After the open time calls are allowed again, but the first failure
+ * opens the breaker once more
+ * <code>
+ * breaker = new CircuitBreaker(10, Duration.ofMinutes(1));
+ * <p>
+ * if (breaker.isCallAllowed()) {
+ * <p>
+ * &nbsp;&nbsp;&nbsp;&nbsp;// call, then breaker.onSuccess() or breaker.onFailure()
+ * <p>
+ * }
+ * </code>
+ */
+public class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    /**
+     * Guarded by <code>this</code>
+     */
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean open;
+
+    /**
+     * @param failureThreshold count of consecutive failures to open the breaker
+     * @param openDuration     time to reject calls after opening
+     */
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("Circuit breaker failure threshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    public synchronized boolean isCallAllowed() {
+        return !open || System.nanoTime() - openedAt >= openNanos;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        open = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (consecutiveFailures >= failureThreshold) {
+            open = true;
+            openedAt = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.viktor235.gameretriever.helper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Opens result files for streamed writing
+ */
+public final class OutputFiles {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private OutputFiles() {
+    }
+
+    /**
+     * Creates missing parent folders and replaces the file. Closing the writer closes the file channel
+     */
+    public static Writer newWriter(Path file, Charset charset) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new BufferedWriter(Channels.newWriter(channel, charset), BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.viktor235.gameretriever.helper;
+
+import java.time.Duration;
+
+/**
+ * Counts handled items of the known total and estimates throughput and remaining time
+ * <code>
+ * meter = new ProgressMeter(1000);
+ * <p>
+ * meter.add(500);
+ * <p>
+ * meter.toString(); // 500/1000, 250/s, ETA 00:02
+ * </code>
+ */
+public class ProgressMeter {
+
+    private final long total;
+    private final long startedAt = System.nanoTime();
+    private long done;
+
+    public ProgressMeter(long total) {
+        this.total = total;
+    }
+
+    public void add(long count) {
+        done += count;
+    }
+
+    public long getDone() {
+        return done;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return handled items per second
+     */
+    public double getRate() {
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        return seconds > 0 ? done / seconds : 0;
+    }
+
+    /**
+     * @return estimated remaining time or <code>null</code> when nothing handled yet
+     */
+    public Duration getEta() {
+        double rate = getRate();
+        if (rate <= 0) {
+            return null;
+        }
+        long remaining = Math.max(0, total - done);
+        return Duration.ofSeconds(Math.round(remaining / rate));
+    }
+
+    @Override
+    public String toString() {
+        Duration eta = getEta();
+        return "%d/%d, %.0f/s, ETA %s".formatted(done, total, getRate(), eta == null ? "--:--" : formatDuration(eta));
+    }
+
+    private static String formatDuration(Duration duration) {
+        if (duration.toHours() > 0) {
+            return "%d:%02d:%02d".formatted(duration.toHours(), duration.toMinutesPart(), duration.toSecondsPart());
+        }
+        return "%02d:%02d".formatted(duration.toMinutesPart(), duration.toSecondsPart());
+    }
+}
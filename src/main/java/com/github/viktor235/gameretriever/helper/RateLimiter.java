@@ -0,0 +1,116 @@
+package com.github.viktor235.gameretriever.helper;
+
+import com.github.viktor235.gameretriever.exception.AppException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Rate limiter with a cap of simultaneously running actions. Actions start evenly spaced, without bursts after idle
+ * time: any second has no more actions than the rate
+ * <code>
+ * limiter = new RateLimiter(4, 8);
+ * <p>
+ * result = limiter.call(() -> request());
+ * </code>
+ */
+public class RateLimiter {
+
+    private final long nanosPerPermit;
+    private final Semaphore openPermits;
+
+    /**
+     * Time when the next permit becomes free. Guarded by <code>this</code>
+     */
+    private long nextFreeNanos = System.nanoTime();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder throttledCalls = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param permitsPerSecond max action rate
+     * @param maxConcurrent    max count of actions running at the same time
+     */
+    public RateLimiter(double permitsPerSecond, int maxConcurrent) {
+        if (permitsPerSecond <= 0 || maxConcurrent <= 0) {
+            throw new IllegalArgumentException("Rate limiter settings must be positive");
+        }
+        this.nanosPerPermit = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.openPermits = new Semaphore(maxConcurrent, true);
+    }
+
+    public <T> T call(Supplier<T> action) throws AppException {
+        long startedAt = System.nanoTime();
+        try {
+            openPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException("Interrupted while waiting for a request permit", e);
+        }
+        try {
+            long delay = reserve();
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+            registerWait(System.nanoTime() - startedAt);
+            return action.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException("Interrupted while waiting for a request permit", e);
+        } finally {
+            openPermits.release();
+        }
+    }
+
+    /**
+     * Takes the next free permit
+     *
+     * @return time in nanos to wait before the permit can be used
+     */
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        nextFreeNanos = Math.max(nextFreeNanos, now);
+        long delay = Math.max(0, nextFreeNanos - now);
+        nextFreeNanos += nanosPerPermit;
+        return delay;
+    }
+
+    private void registerWait(long waited) {
+        calls.increment();
+        // Waiting less than a millisecond is not a throttling
+        if (waited >= TimeUnit.MILLISECONDS.toNanos(1)) {
+            throttledCalls.increment();
+            waitNanos.add(waited);
+            maxWaitNanos.accumulate(waited);
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(
+                calls.sum(),
+                throttledCalls.sum(),
+                TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()),
+                TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get())
+        );
+    }
+
+    public void resetStats() {
+        calls.reset();
+        throttledCalls.reset();
+        waitNanos.reset();
+        maxWaitNanos.reset();
+    }
+
+    public record Stats(
+            long calls,
+            long throttledCalls,
+            long totalWaitMillis,
+            long maxWaitMillis
+    ) {
+    }
+}
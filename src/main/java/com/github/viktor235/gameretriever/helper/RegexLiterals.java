@@ -0,0 +1,100 @@
+package com.github.viktor235.gameretriever.helper;
+
+/**
+ * Extracts literal text required by a regex, so most of not matching strings can be rejected without the regex engine
+ * <code>
+ * RegexLiterals.prefix("INSERT INTO GAME \\(ID\\) VALUES \\((?<id>\\d+)\\);"); // "INSERT INTO GAME (ID) VALUES ("
+ * </code>
+ */
+public final class RegexLiterals {
+
+    private static final String METACHARACTERS = ".[]()*+?{}^$|";
+    private static final String QUANTIFIERS = "*+?{";
+
+    private RegexLiterals() {
+    }
+
+    /**
+     * Literal text every match starts with. The extraction is conservative: it stops at the first group, class or
+     * escape sequence with a special meaning. Regex with top level alternation has no prefix at all. Possessive
+     * quantifiers and atomic groups are handled as any other quantifier or group
+     *
+     * @return literal prefix or an empty string if there is no one
+     */
+    public static String prefix(String regex) {
+        if (hasTopLevelAlternation(regex)) {
+            return "";
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            int next;
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    break;
+                }
+                char escaped = regex.charAt(i + 1);
+                if (escaped == 'Q') {
+                    int quoteEnd = regex.indexOf("\\E", i + 2);
+                    prefix.append(quoteEnd < 0 ? regex.substring(i + 2) : regex.substring(i + 2, quoteEnd));
+                    next = quoteEnd < 0 ? regex.length() : quoteEnd + 2;
+                } else if (Character.isLetterOrDigit(escaped)) {
+                    // Character class (\d), back reference (\1) or control character (\t)
+                    break;
+                } else {
+                    prefix.append(escaped);
+                    next = i + 2;
+                }
+            } else if (METACHARACTERS.indexOf(c) >= 0) {
+                break;
+            } else {
+                prefix.append(c);
+                next = i + 1;
+            }
+
+            if (next < regex.length() && QUANTIFIERS.indexOf(regex.charAt(next)) >= 0) {
+                // Quantified character is optional or repeated
+                if (!prefix.isEmpty()) {
+                    prefix.setLength(prefix.length() - 1);
+                }
+                break;
+            }
+            i = next;
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * Alternation inside a group doesn't matter: the prefix ends before the group
+     */
+    private static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        boolean quoted = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (quoted) {
+                if (regex.startsWith("\\E", i)) {
+                    quoted = false;
+                    i++;
+                }
+            } else if (c == '\\') {
+                quoted = regex.startsWith("Q", i + 1);
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.viktor235.gameretriever.helper;
+
+import com.github.viktor235.gameretriever.exception.AppException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of binary responses. Every entry is a file named by hash of the key. Entries expire after TTL,
+ * the oldest entries are evicted when the cache exceeds the max size. Any cache IO error is treated as a miss
+ */
+@Slf4j
+public class ResponseCache {
+
+    private static final String EXTENSION = ".bin";
+
+    private final Path dir;
+    private final Duration ttl;
+    private final long maxSizeBytes;
+    private final AtomicLong size = new AtomicLong();
+
+    public ResponseCache(Path dir, Duration ttl, long maxSizeBytes) throws AppException {
+        this.dir = dir;
+        this.ttl = ttl;
+        this.maxSizeBytes = maxSizeBytes;
+        try {
+            Files.createDirectories(dir);
+            size.set(listEntries().stream()
+                    .mapToLong(this::sizeOf)
+                    .sum());
+        } catch (IOException e) {
+            throw new AppException("Error while opening cache folder '%s': %s".formatted(dir, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * @return cached value or <code>null</code> if there is no actual entry
+     */
+    public byte[] get(String key) {
+        Path file = file(key);
+        try {
+            Instant modified = Files.getLastModifiedTime(file).toInstant();
+            if (modified.plus(ttl).isBefore(Instant.now())) {
+                delete(file);
+                return null;
+            }
+            return Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Error while reading cache entry '{}': {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    public void put(String key, byte[] value) {
+        Path file = file(key);
+        try {
+            long previousSize = Files.exists(file) ? Files.size(file) : 0;
+            // Write to a temp file first, so readers never see a partly written entry
+            Path tempFile = Files.createTempFile(dir, "entry", ".tmp");
+            Files.write(tempFile, value);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (size.addAndGet(value.length - previousSize) > maxSizeBytes) {
+                evict();
+            }
+        } catch (IOException e) {
+            log.warn("Error while writing cache entry '{}': {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the oldest entries until the cache takes 90% of the max size
+     */
+    private synchronized void evict() throws IOException {
+        long targetSize = maxSizeBytes / 10 * 9;
+        if (size.get() <= targetSize) {
+            return;
+        }
+        List<Path> entries = listEntries().stream()
+                .sorted(Comparator.comparing(this::lastModified))
+                .toList();
+        for (Path entry : entries) {
+            if (size.get() <= targetSize) {
+                break;
+            }
+            delete(entry);
+        }
+    }
+
+    private void delete(Path file) throws IOException {
+        long fileSize = sizeOf(file);
+        if (Files.deleteIfExists(file)) {
+            size.addAndGet(-fileSize);
+        }
+    }
+
+    private List<Path> listEntries() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(f -> f.getFileName().toString().endsWith(EXTENSION))
+                    .toList();
+        }
+    }
+
+    private long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Instant lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant();
+        } catch (IOException e) {
+            return Instant.MIN;
+        }
+    }
+
+    private Path file(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return dir.resolve(HexFormat.of().formatHex(hash) + EXTENSION);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.viktor235.gameretriever.helper;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads rows of a snapshot written by {@link SnapshotWriter} one by one. Missing snapshot has no rows
+ * <code>
+ * reader.startTable("GAME", 1);
+ * while (reader.next()) {
+ *     reader.getKey(0);
+ *     reader.getHash();
+ * }
+ * </code>
+ */
+public class SnapshotReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final DataInputStream input;
+    private long[] key = new long[0];
+    private long hash;
+    private boolean tableEnded = true;
+
+    public SnapshotReader(Path file) throws IOException {
+        input = Files.exists(file)
+                ? new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))
+                : null;
+    }
+
+    /**
+     * Skips the rest of the previous table and reads the header of the next one
+     *
+     * @throws IOException when the next snapshot table is not the expected one
+     */
+    public void startTable(String table, int keySize) throws IOException {
+        while (next()) {
+            // Skip not read rows
+        }
+        if (input == null) {
+            return;
+        }
+        String snapshotTable = input.readUTF();
+        int snapshotKeySize = input.readInt();
+        if (!snapshotTable.equals(table) || snapshotKeySize != keySize) {
+            throw new IOException("Snapshot has table %s with %d key columns instead of %s with %d"
+                    .formatted(snapshotTable, snapshotKeySize, table, keySize));
+        }
+        key = new long[keySize];
+        tableEnded = false;
+    }
+
+    /**
+     * @return <code>false</code> if there are no more rows in the current table
+     */
+    public boolean next() throws IOException {
+        if (tableEnded) {
+            return false;
+        }
+        if (input.readByte() == SnapshotWriter.END) {
+            tableEnded = true;
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            key[i] = input.readLong();
+        }
+        hash = input.readLong();
+        return true;
+    }
+
+    public int getKeySize() {
+        return key.length;
+    }
+
+    public long getKey(int index) {
+        return key[index];
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Compares the current row key with the key of the exported row
+     *
+     * @param values row column values, key columns first
+     */
+    public int compareKey(Object[] values) {
+        for (int i = 0; i < key.length; i++) {
+            int result = Long.compare(key[i], ((Number) values[i]).longValue());
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (input != null) {
+            input.close();
+        }
+    }
+}
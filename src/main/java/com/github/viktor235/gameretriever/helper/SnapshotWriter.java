@@ -0,0 +1,97 @@
+package com.github.viktor235.gameretriever.helper;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes a compact snapshot of exported rows: key columns and a 64-bit content hash per row. Tables and rows are
+ * written in the export order, so {@link SnapshotReader} can compare the snapshot with the next export by a single
+ * pass. Key columns must be numeric
+ * <pre>
+ * table: UTF name, int key size, rows, END
+ * row:   ROW, long key values, long hash
+ * </pre>
+ */
+public class SnapshotWriter implements Closeable {
+
+    static final byte ROW = 1;
+    static final byte END = 0;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final DataOutputStream output;
+    private final StringBuilder literals = new StringBuilder();
+    private int keySize;
+    private boolean tableStarted;
+
+    public SnapshotWriter(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+    }
+
+    public void startTable(String table, int keySize) throws IOException {
+        endTable();
+        output.writeUTF(table);
+        output.writeInt(keySize);
+        this.keySize = keySize;
+        tableStarted = true;
+    }
+
+    /**
+     * @param values row column values, key columns first
+     * @return content hash of the row
+     */
+    public long add(Object[] values) {
+        long hash = hash(values);
+        try {
+            output.writeByte(ROW);
+            for (int i = 0; i < keySize; i++) {
+                output.writeLong(((Number) values[i]).longValue());
+            }
+            output.writeLong(hash);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return hash;
+    }
+
+    /**
+     * FNV-1a of the SQL literals of all values. Literals keep <code>NULL</code> and <code>'NULL'</code> different
+     */
+    public long hash(Object[] values) {
+        literals.setLength(0);
+        for (Object value : values) {
+            SqlLiterals.append(literals, value);
+            literals.append(',');
+        }
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < literals.length(); i++) {
+            char c = literals.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (output) {
+            endTable();
+        }
+    }
+
+    private void endTable() throws IOException {
+        if (tableStarted) {
+            output.writeByte(END);
+            tableStarted = false;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.viktor235.gameretriever.helper;
+
+/**
+ * Formats column values as SQL literals
+ * <code>
+ * SqlLiterals.of("Assassin's Creed"); // 'Assassin''s Creed'
+ * SqlLiterals.of(true);               // TRUE
+ * SqlLiterals.of(null);               // NULL
+ * </code>
+ */
+public final class SqlLiterals {
+
+    private SqlLiterals() {
+    }
+
+    public static String of(Object value) {
+        StringBuilder result = new StringBuilder();
+        append(result, value);
+        return result.toString();
+    }
+
+    /**
+     * Appends the literal without intermediate strings
+     */
+    public static void append(StringBuilder result, Object value) {
+        if (value == null) {
+            result.append("NULL");
+        } else if (value instanceof Boolean bool) {
+            result.append(bool ? "TRUE" : "FALSE");
+        } else if (value instanceof Number) {
+            result.append(value);
+        } else {
+            String text = value.toString();
+            result.append('\'');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\'') {
+                    result.append('\'');
+                }
+                result.append(c);
+            }
+            result.append('\'');
+        }
+    }
+}
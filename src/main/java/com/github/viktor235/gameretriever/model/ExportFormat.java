@@ -0,0 +1,25 @@
+package com.github.viktor235.gameretriever.model;
+
+/**
+ * Data export format. Every exported table is written to its own file: <code>game.jsonl</code>, <code>game.csv</code>
+ */
+public enum ExportFormat {
+    /**
+     * JSON object per line with camel case column names as keys
+     */
+    JSONL("jsonl"),
+    /**
+     * RFC-4180 CSV with a header line
+     */
+    CSV("csv");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
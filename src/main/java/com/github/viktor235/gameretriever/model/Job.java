@@ -0,0 +1,97 @@
+package com.github.viktor235.gameretriever.model;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Future;
+
+/**
+ * Long-running command executed in background. Jobs using the same data (see {@link JobResources}) never run together
+ */
+@Getter
+public class Job {
+
+    private final int id;
+    private final String name;
+    private final JobResources resources;
+    private final Instant submittedAt = Instant.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile String message;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile Future<?> future;
+
+    public Job(int id, String name, JobResources resources) {
+        this.id = id;
+        this.name = name;
+        this.resources = resources;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * @return <code>false</code> if the job was canceled before start
+     */
+    public synchronized boolean start() {
+        if (status != Status.QUEUED) {
+            return false;
+        }
+        status = Status.RUNNING;
+        startedAt = Instant.now();
+        return true;
+    }
+
+    public synchronized void finish(Status status, String message) {
+        if (isFinished()) {
+            return;
+        }
+        this.status = status;
+        this.message = message;
+        finishedAt = Instant.now();
+    }
+
+    /**
+     * Queued job is canceled at once, running job is marked to stop
+     */
+    public synchronized void markCanceling() {
+        if (status == Status.QUEUED) {
+            finish(Status.CANCELED, "Canceled before start");
+        } else if (status == Status.RUNNING) {
+            status = Status.CANCELING;
+        }
+    }
+
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED || status == Status.CANCELED;
+    }
+
+    /**
+     * @return run time of the job. <code>null</code> if not started yet
+     */
+    public Duration getDuration() {
+        if (startedAt == null) {
+            return null;
+        }
+        return Duration.between(startedAt, finishedAt == null ? Instant.now() : finishedAt);
+    }
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        /**
+         * Cancellation is requested, the job is stopping
+         */
+        CANCELING,
+        SUCCEEDED,
+        FAILED,
+        CANCELED
+    }
+}
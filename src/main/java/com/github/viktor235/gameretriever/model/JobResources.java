@@ -0,0 +1,64 @@
+package com.github.viktor235.gameretriever.model;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * DB tables and files used by a command. Commands conflict if one of them writes data the other one reads or writes,
+ * readers don't conflict with each other
+ * <code>
+ * JobResources.NONE.read(JobResources.table("PLATFORM")).write(JobResources.file("result/changelog.h2.sql"));
+ * </code>
+ */
+public record JobResources(
+        Set<String> reads,
+        Set<String> writes
+) {
+
+    public static final JobResources NONE = new JobResources(Set.of(), Set.of());
+
+    public static String table(String name) {
+        return "table " + name.toUpperCase();
+    }
+
+    /**
+     * Files are compared by the absolute path
+     */
+    public static String file(String path) {
+        return "file " + Path.of(path).toAbsolutePath().normalize();
+    }
+
+    public JobResources read(String... resources) {
+        return read(Set.of(resources));
+    }
+
+    public JobResources read(Collection<String> resources) {
+        return new JobResources(union(reads, resources), writes);
+    }
+
+    public JobResources write(String... resources) {
+        return write(Set.of(resources));
+    }
+
+    public JobResources write(Collection<String> resources) {
+        return new JobResources(reads, union(writes, resources));
+    }
+
+    public JobResources with(JobResources other) {
+        return new JobResources(union(reads, other.reads), union(writes, other.writes));
+    }
+
+    public boolean conflictsWith(JobResources other) {
+        return writes.stream().anyMatch(r -> other.reads.contains(r) || other.writes.contains(r))
+                || other.writes.stream().anyMatch(reads::contains);
+    }
+
+    private static Set<String> union(Set<String> first, Collection<String> second) {
+        Set<String> result = new HashSet<>(first);
+        result.addAll(second);
+        return Set.copyOf(result);
+    }
+}
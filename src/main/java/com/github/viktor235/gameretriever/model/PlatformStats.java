@@ -2,6 +2,8 @@ package com.github.viktor235.gameretriever.model;
 
 import lombok.Builder;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 
 @Builder
@@ -12,9 +14,16 @@ public record PlatformStats(
         List<Platform> platformStats
 ) {
 
+    /**
+     * @param syncedAt     time of the last games update. <code>null</code> if it is unknown
+     * @param syncDuration duration of the last games update. <code>null</code> if it is unknown
+     */
     public record Platform(
+            long id,
             String name,
-            long gameCount
+            long gameCount,
+            Instant syncedAt,
+            Duration syncDuration
     ) {
     }
 }
@@ -7,36 +7,33 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import javax.persistence.Column;
 import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.IdClass;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
 /**
- * This entity is ManyToMany relation between {@link Game} and {@link Platform}
+ * This entity is ManyToMany relation between {@link Game} and {@link Platform}.
+ * Composite key allows batch inserts unlike IDENTITY one
  */
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
 @Table(name = "game_platform")
+@IdClass(GamePlatformId.class)
 @Getter
 @Setter
 public class GamePlatform {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    @Column(name = "id")
-    private long id;
-
-    @ManyToOne()
-    @JoinColumn(name = "game_id")
+    @ManyToOne
+    @JoinColumn(name = "game_id", nullable = false)
     @JsonIgnore
     private Game game;
 
+    @Id
     @ManyToOne
     @JoinColumn(name = "platform_id", nullable = false)
     @JsonIgnore
@@ -0,0 +1,22 @@
+package com.github.viktor235.gameretriever.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * Composite key of {@link GamePlatform}. Field names match {@link GamePlatform} id fields
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class GamePlatformId implements Serializable {
+    private long game;
+    private long platform;
+}
@@ -0,0 +1,51 @@
+package com.github.viktor235.gameretriever.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Progress of the full games update for the {@link Platform}. Saved together with every page of games,
+ * so an interrupted update can be continued from the last saved page
+ */
+@Entity
+@Table(name = "ingestion_checkpoint")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IngestionCheckpoint {
+    @Id
+    @Column(name = "platform_id")
+    private long platformId;
+
+    /**
+     * Id of the last saved game. Games are requested ordered by id, so the update continues after this id
+     */
+    @Column(name = "last_game_id", nullable = false)
+    private long lastGameId;
+
+    @Column(name = "page_count", nullable = false)
+    private int pageCount;
+
+    @Column(name = "game_count", nullable = false)
+    private long gameCount;
+
+    /**
+     * Start time of the platform scan minus a safety margin (unix time in seconds). Becomes {@link PlatformSync}
+     * watermark
+     */
+    @Column(name = "games_updated_at", nullable = false)
+    private long gamesUpdatedAt;
+
+    @Column(name = "completed", nullable = false)
+    private boolean completed;
+}
@@ -0,0 +1,35 @@
+package com.github.viktor235.gameretriever.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Sync watermark of the {@link Platform} games. Delta sync requests only games updated since this watermark
+ */
+@Entity
+@Table(name = "platform_sync")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PlatformSync {
+    @Id
+    @Column(name = "platform_id")
+    private long platformId;
+
+    /**
+     * Start time of the last platform games update minus a safety margin (unix time in seconds). Games updated
+     * on IGDB after it are requested by the next delta sync
+     */
+    @Column(name = "games_updated_at", nullable = false)
+    private long gamesUpdatedAt;
+}
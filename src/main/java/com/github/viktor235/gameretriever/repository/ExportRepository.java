@@ -0,0 +1,139 @@
+package com.github.viktor235.gameretriever.repository;
+
+import com.github.viktor235.gameretriever.exception.AppException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Streams rows of the exported tables. Rows are read by a forward-only cursor, so memory use doesn't depend on
+ * the table size
+ */
+@Repository
+@RequiredArgsConstructor
+public class ExportRepository {
+
+    /**
+     * Exported tables. Referenced tables go first, so the rows can be inserted in this order
+     */
+    public static final List<String> TABLES = List.of("PLATFORM", "GAME", "GAME_PLATFORM");
+    /**
+     * Exported columns of the tables. The first ones are the key, rows are ordered by it
+     */
+    private static final Map<String, ExportedTable> TABLE_COLUMNS = Map.of(
+            "PLATFORM", new ExportedTable(List.of("ID", "ACTIVE", "NAME", "SHORT_NAME"), 1),
+            "GAME", new ExportedTable(List.of("ID", "INFO_LINK", "NAME"), 1),
+            "GAME_PLATFORM", new ExportedTable(List.of("GAME_ID", "PLATFORM_ID"), 2)
+    );
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value(value = "${spring.jpa.properties.hibernate.default_schema:GAME_RETRIEVER}")
+    private String schema;
+
+    /**
+     * @return exported columns of the table in the order of {@link #forEachRowValues} values
+     */
+    public List<String> getColumns(String table) throws AppException {
+        return getTable(table).columns();
+    }
+
+    /**
+     * @return camel case names of the exported columns: <code>INFO_LINK</code> -> <code>infoLink</code>
+     */
+    public List<String> getFieldNames(String table) throws AppException {
+        return getColumns(table).stream()
+                .map(ExportRepository::toCamelCase)
+                .toList();
+    }
+
+    /**
+     * @return count of the first exported columns making the table key
+     */
+    public int getKeySize(String table) throws AppException {
+        return getTable(table).keySize();
+    }
+
+    /**
+     * @param table      exported table name
+     * @param where      optional SQL condition
+     * @param rowHandler gets column values by camel case column name (<code>INFO_LINK</code> -> <code>infoLink</code>).
+     *                   The map is reused for the next row
+     */
+    public void forEachRow(String table, String where, Consumer<Map<String, Object>> rowHandler) throws AppException {
+        List<String> names = getFieldNames(table);
+        Map<String, Object> row = new LinkedHashMap<>();
+        forEachRowValues(table, where, values -> {
+            for (int i = 0; i < values.length; i++) {
+                row.put(names.get(i), values[i]);
+            }
+            rowHandler.accept(row);
+        });
+    }
+
+    /**
+     * @param table      exported table name
+     * @param where      optional SQL condition
+     * @param rowHandler gets column values in the order of {@link #getColumns}. The array is reused for the next row
+     * @throws AppException when the thread is interrupted (job cancellation)
+     */
+    public void forEachRowValues(String table, String where, Consumer<Object[]> rowHandler) throws AppException {
+        ExportedTable exportedTable = getTable(table);
+        List<String> columns = exportedTable.columns();
+        String sql = "SELECT %s FROM %s.%s%s ORDER BY %s".formatted(
+                String.join(", ", columns), schema, table,
+                where == null || where.isBlank() ? "" : " WHERE " + where,
+                String.join(", ", columns.subList(0, exportedTable.keySize())));
+
+        Object[] values = new Object[columns.size()];
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new AppException("Reading table '%s' interrupted".formatted(table));
+            }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = rs.getObject(i + 1);
+            }
+            rowHandler.accept(values);
+        });
+    }
+
+    private static ExportedTable getTable(String table) throws AppException {
+        ExportedTable exportedTable = TABLE_COLUMNS.get(table);
+        if (exportedTable == null) {
+            throw new AppException("Table '%s' can't be exported. Tables: %s".formatted(table, TABLES));
+        }
+        return exportedTable;
+    }
+
+    private static String toCamelCase(String columnName) {
+        StringBuilder result = new StringBuilder();
+        boolean upperNext = false;
+        for (char c : columnName.toLowerCase().toCharArray()) {
+            if (c == '_') {
+                upperNext = true;
+            } else {
+                result.append(upperNext ? Character.toUpperCase(c) : c);
+                upperNext = false;
+            }
+        }
+        return result.toString();
+    }
+
+    private record ExportedTable(List<String> columns, int keySize) {
+    }
+}
@@ -0,0 +1,203 @@
+package com.github.viktor235.gameretriever.repository;
+
+import com.github.viktor235.gameretriever.model.entity.Game;
+import com.github.viktor235.gameretriever.model.entity.Platform;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Bulk JDBC writes of the games. Every page of games is written with two JDBC batches: games and game-platform
+ * relations.
+ * <p>
+ * Full games reload fills staging copies of GAME and GAME_PLATFORM tables, then swaps them with the actual tables.
+ * Until the swap, readers see the previous complete data set
+ */
+@Repository
+@RequiredArgsConstructor
+public class GameBulkRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value(value = "${spring.jpa.properties.hibernate.default_schema:GAME_RETRIEVER}")
+    private String schema;
+
+    private static final String GAME = "GAME";
+    private static final String GAME_PLATFORM = "GAME_PLATFORM";
+    private static final String STAGING_SUFFIX = "_STAGING";
+    private static final String OLD_SUFFIX = "_OLD";
+
+    /**
+     * Recreates empty staging tables. Constraints are unnamed, because the names must stay unique after the swap
+     */
+    public void createStagingTables() {
+        dropStagingTables();
+        jdbcTemplate.execute("""
+                CREATE TABLE %1$s.GAME_STAGING (
+                    ID BIGINT NOT NULL PRIMARY KEY,
+                    INFO_LINK VARCHAR(255),
+                    NAME VARCHAR(255) NOT NULL
+                )""".formatted(schema));
+        jdbcTemplate.execute("""
+                CREATE TABLE %1$s.GAME_PLATFORM_STAGING (
+                    GAME_ID BIGINT NOT NULL REFERENCES %1$s.GAME_STAGING (ID) ON DELETE RESTRICT ON UPDATE RESTRICT,
+                    PLATFORM_ID BIGINT NOT NULL REFERENCES %1$s.PLATFORM (ID) ON DELETE RESTRICT ON UPDATE RESTRICT,
+                    PRIMARY KEY (GAME_ID, PLATFORM_ID)
+                )""".formatted(schema));
+    }
+
+    public boolean stagingTablesExist() {
+        Integer count = jdbcTemplate.queryForObject("""
+                        SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES
+                        WHERE TABLE_SCHEMA = ? AND TABLE_NAME IN (?, ?)""",
+                Integer.class, schema, GAME + STAGING_SUFFIX, GAME_PLATFORM + STAGING_SUFFIX);
+        return count != null && count == 2;
+    }
+
+    public void dropStagingTables() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS %s".formatted(table(GAME_PLATFORM + STAGING_SUFFIX)));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS %s".formatted(table(GAME + STAGING_SUFFIX)));
+    }
+
+    /**
+     * Saves platform games into staging tables. The same game can be saved for several platforms
+     */
+    @Transactional
+    public void saveStagingGames(Platform platform, List<Game> games) {
+        mergeGames(GAME + STAGING_SUFFIX, games);
+        jdbcTemplate.batchUpdate("INSERT INTO %s (GAME_ID, PLATFORM_ID) VALUES (?, ?)"
+                        .formatted(table(GAME_PLATFORM + STAGING_SUFFIX)),
+                games, games.size(),
+                (ps, game) -> {
+                    ps.setLong(1, game.getId());
+                    ps.setLong(2, platform.getId());
+                });
+    }
+
+    /**
+     * Inserts or updates platform games in the actual tables
+     */
+    @Transactional
+    public void upsertGames(Platform platform, List<Game> games) {
+        mergeGames(GAME, games);
+        jdbcTemplate.batchUpdate("MERGE INTO %s (GAME_ID, PLATFORM_ID) KEY (GAME_ID, PLATFORM_ID) VALUES (?, ?)"
+                        .formatted(table(GAME_PLATFORM)),
+                games, games.size(),
+                (ps, game) -> {
+                    ps.setLong(1, game.getId());
+                    ps.setLong(2, platform.getId());
+                });
+    }
+
+    private void mergeGames(String tableName, List<Game> games) {
+        jdbcTemplate.batchUpdate("MERGE INTO %s (ID, INFO_LINK, NAME) KEY (ID) VALUES (?, ?, ?)"
+                        .formatted(table(tableName)),
+                games, games.size(),
+                (ps, game) -> {
+                    ps.setLong(1, game.getId());
+                    ps.setString(2, game.getInfoLink());
+                    ps.setString(3, game.getName());
+                });
+    }
+
+    /**
+     * Replaces GAME and GAME_PLATFORM tables with the staging ones. H2 DDL is not transactional, so the
+     * database is switched to exclusive mode: other connections wait until the renaming is finished. If a rename fails,
+     * the done renames are undone: the actual and staging tables are kept as they were
+     */
+    public void swapStagingTables() {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET EXCLUSIVE 1");
+                try {
+                    rename(statement, GAME_PLATFORM, GAME_PLATFORM + OLD_SUFFIX);
+                    rename(statement, GAME, GAME + OLD_SUFFIX);
+                    rename(statement, GAME + STAGING_SUFFIX, GAME);
+                    rename(statement, GAME_PLATFORM + STAGING_SUFFIX, GAME_PLATFORM);
+                } catch (SQLException e) {
+                    try {
+                        recoverSwap(statement);
+                    } catch (SQLException undoError) {
+                        e.addSuppressed(undoError);
+                    }
+                    throw e;
+                } finally {
+                    statement.execute("SET EXCLUSIVE 0");
+                }
+                statement.execute("DROP TABLE %s".formatted(table(GAME_PLATFORM + OLD_SUFFIX)));
+                statement.execute("DROP TABLE %s".formatted(table(GAME + OLD_SUFFIX)));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Completes the swap interrupted by a crash. If a staging table is left, not all tables were renamed: the
+     * <code>_OLD</code> tables become the actual tables again, the swapped in tables become the staging ones, and the
+     * update can be resumed. Otherwise all tables were renamed and only the left <code>_OLD</code> tables are dropped
+     *
+     * @return <code>true</code> if there was an interrupted swap
+     */
+    public boolean recoverInterruptedSwap() {
+        Boolean recovered = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                return recoverSwap(statement);
+            }
+        });
+        return Boolean.TRUE.equals(recovered);
+    }
+
+    private boolean recoverSwap(Statement statement) throws SQLException {
+        boolean renamed = !tableExists(statement, GAME + STAGING_SUFFIX)
+                && !tableExists(statement, GAME_PLATFORM + STAGING_SUFFIX);
+        boolean recovered = false;
+        // GAME_PLATFORM_OLD references GAME_OLD, so it is dropped first
+        for (String name : List.of(GAME_PLATFORM, GAME)) {
+            if (!tableExists(statement, name + OLD_SUFFIX)) {
+                continue;
+            }
+            if (renamed) {
+                statement.execute("DROP TABLE %s".formatted(table(name + OLD_SUFFIX)));
+            } else {
+                if (tableExists(statement, name)) {
+                    rename(statement, name, name + STAGING_SUFFIX);
+                }
+                rename(statement, name + OLD_SUFFIX, name);
+            }
+            recovered = true;
+        }
+        return recovered;
+    }
+
+    /**
+     * Uses the statement connection: other connections wait while the database is in exclusive mode
+     */
+    private boolean tableExists(Statement statement, String name) throws SQLException {
+        try (PreparedStatement query = statement.getConnection().prepareStatement("""
+                SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES
+                WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?""")) {
+            query.setString(1, schema);
+            query.setString(2, name);
+            try (ResultSet resultSet = query.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) > 0;
+            }
+        }
+    }
+
+    private void rename(Statement statement, String from, String to) throws SQLException {
+        statement.execute("ALTER TABLE %s RENAME TO %s".formatted(table(from), to));
+    }
+
+    private String table(String name) {
+        return schema + "." + name;
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.viktor235.gameretriever.repository;
 
 import com.github.viktor235.gameretriever.model.entity.GamePlatform;
+import com.github.viktor235.gameretriever.model.entity.GamePlatformId;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -9,13 +10,13 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface GamePlatformRepository extends JpaRepository<GamePlatform, Long> {
+public interface GamePlatformRepository extends JpaRepository<GamePlatform, GamePlatformId> {
 
     List<GamePlatform> findAllByPlatform_Id(long platformId);
 
     @Modifying
     @Query(
-            value = "TRUNCATE TABLE GAME_RETRIEVER.GAME_PLATFORM RESTART IDENTITY",
+            value = "TRUNCATE TABLE GAME_RETRIEVER.GAME_PLATFORM",
             nativeQuery = true
     )
     void truncateTable();
@@ -0,0 +1,9 @@
+package com.github.viktor235.gameretriever.repository;
+
+import com.github.viktor235.gameretriever.model.entity.IngestionCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IngestionCheckpointRepository extends JpaRepository<IngestionCheckpoint, Long> {
+}
@@ -10,6 +10,4 @@ import java.util.List;
 public interface PlatformRepository extends JpaRepository<Platform, Long> {
 
     List<Platform> findByActiveTrue();
-
-    long countByActiveTrue();
 }
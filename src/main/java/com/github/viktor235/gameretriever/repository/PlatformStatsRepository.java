@@ -0,0 +1,101 @@
+package com.github.viktor235.gameretriever.repository;
+
+import com.github.viktor235.gameretriever.model.PlatformStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Materialized game counts of the platforms with the time and duration of the last games update. The table is
+ * maintained by games grabbing, so stats are read without counting the relations
+ */
+@Repository
+@RequiredArgsConstructor
+public class PlatformStatsRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value(value = "${spring.jpa.properties.hibernate.default_schema:GAME_RETRIEVER}")
+    private String schema;
+
+    /**
+     * @param syncDuration optional duration of the platform games update
+     */
+    public void save(long platformId, long gameCount, Instant syncedAt, Duration syncDuration) {
+        jdbcTemplate.update("""
+                        MERGE INTO %s.PLATFORM_STATS (PLATFORM_ID, GAME_COUNT, SYNCED_AT, SYNC_DURATION_MS)
+                        KEY (PLATFORM_ID) VALUES (?, ?, ?, ?)""".formatted(schema),
+                platformId, gameCount, Timestamp.from(syncedAt), syncDuration == null ? null : syncDuration.toMillis());
+    }
+
+    /**
+     * Saves the platform stats with the game count of the actual relations. The count uses the platform index
+     */
+    public void saveCounted(long platformId, Instant syncedAt, Duration syncDuration) {
+        jdbcTemplate.update("""
+                        MERGE INTO %1$s.PLATFORM_STATS (PLATFORM_ID, GAME_COUNT, SYNCED_AT, SYNC_DURATION_MS)
+                        KEY (PLATFORM_ID)
+                        VALUES (?, (SELECT COUNT(*) FROM %1$s.GAME_PLATFORM WHERE PLATFORM_ID = ?), ?, ?)"""
+                        .formatted(schema),
+                platformId, platformId, Timestamp.from(syncedAt),
+                syncDuration == null ? null : syncDuration.toMillis());
+    }
+
+    public void deleteAll() {
+        jdbcTemplate.update("DELETE FROM %s.PLATFORM_STATS".formatted(schema));
+    }
+
+    /**
+     * Stats of the active platforms ordered by name. Platforms without saved stats (games were never updated since
+     * the stats appeared) are counted by a single GROUP BY query
+     */
+    public List<PlatformStats.Platform> findActive() {
+        List<PlatformStats.Platform> platforms = jdbcTemplate.query("""
+                        SELECT p.ID, p.NAME, s.GAME_COUNT, s.SYNCED_AT, s.SYNC_DURATION_MS
+                        FROM %1$s.PLATFORM p LEFT JOIN %1$s.PLATFORM_STATS s ON s.PLATFORM_ID = p.ID
+                        WHERE p.ACTIVE = TRUE
+                        ORDER BY p.NAME""".formatted(schema),
+                (rs, rowNum) -> {
+                    Timestamp syncedAt = rs.getTimestamp("SYNCED_AT");
+                    long durationMillis = rs.getLong("SYNC_DURATION_MS");
+                    Duration duration = rs.wasNull() ? null : Duration.ofMillis(durationMillis);
+                    return new PlatformStats.Platform(
+                            rs.getLong("ID"),
+                            rs.getString("NAME"),
+                            rs.getLong("GAME_COUNT"),
+                            syncedAt == null ? null : syncedAt.toInstant(),
+                            duration);
+                });
+
+        // Saved stats always have the sync time
+        if (platforms.stream().allMatch(p -> p.syncedAt() != null)) {
+            return platforms;
+        }
+        Map<Long, Long> gameCounts = countGames();
+        return platforms.stream()
+                .map(p -> p.syncedAt() != null ? p : new PlatformStats.Platform(
+                        p.id(), p.name(), gameCounts.getOrDefault(p.id(), 0L), null, null))
+                .toList();
+    }
+
+    private Map<Long, Long> countGames() {
+        Map<Long, Long> gameCounts = new HashMap<>();
+        jdbcTemplate.query("""
+                        SELECT gp.PLATFORM_ID, COUNT(*) AS GAME_COUNT
+                        FROM %1$s.GAME_PLATFORM gp JOIN %1$s.PLATFORM p ON p.ID = gp.PLATFORM_ID
+                        WHERE p.ACTIVE = TRUE
+                        GROUP BY gp.PLATFORM_ID""".formatted(schema),
+                rs -> {
+                    gameCounts.put(rs.getLong("PLATFORM_ID"), rs.getLong("GAME_COUNT"));
+                });
+        return gameCounts;
+    }
+}
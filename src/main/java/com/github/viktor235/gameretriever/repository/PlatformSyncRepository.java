@@ -0,0 +1,9 @@
+package com.github.viktor235.gameretriever.repository;
+
+import com.github.viktor235.gameretriever.model.entity.PlatformSync;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PlatformSyncRepository extends JpaRepository<PlatformSync, Long> {
+}
@@ -0,0 +1,113 @@
+package com.github.viktor235.gameretriever.repository;
+
+import com.github.viktor235.gameretriever.model.entity.Platform;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk upsert of small reference tables (platforms and alike). Current rows are loaded by one query, so every
+ * incoming row is compared in memory and only new or changed rows are written by one JDBC batch
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReferenceBulkRepository {
+
+    /**
+     * Active flag is chosen by the user, so it is kept for existing platforms and is <code>false</code> for new ones
+     */
+    public static final ReferenceTable<Platform> PLATFORM = new ReferenceTable<>(
+            "PLATFORM",
+            List.of("ID", "ACTIVE", "NAME", "SHORT_NAME"),
+            (rs, rowNum) -> Platform.builder()
+                    .id(rs.getLong("ID"))
+                    .active(rs.getBoolean("ACTIVE"))
+                    .name(rs.getString("NAME"))
+                    .shortName(rs.getString("SHORT_NAME")).build(),
+            Platform::getId,
+            p -> new Object[]{p.getId(), p.getActive(), p.getName(), p.getShortName()},
+            (current, incoming) -> {
+                if (current == null) {
+                    incoming.setActive(false);
+                    return incoming;
+                }
+                if (Objects.equals(current.getName(), incoming.getName())
+                        && Objects.equals(current.getShortName(), incoming.getShortName())) {
+                    return null;
+                }
+                incoming.setActive(current.getActive());
+                return incoming;
+            });
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value(value = "${spring.jpa.properties.hibernate.default_schema:GAME_RETRIEVER}")
+    private String schema;
+
+    /**
+     * @return count of written rows
+     */
+    @Transactional
+    public <T> int upsert(ReferenceTable<T> table, Collection<T> rows) {
+        String tableName = schema + "." + table.name();
+        Map<Object, T> currentRows = jdbcTemplate.query("SELECT %s FROM %s"
+                                .formatted(String.join(", ", table.columns()), tableName),
+                        table.rowMapper()).stream()
+                .collect(Collectors.toMap(table.keyFunc(), Function.identity()));
+
+        List<T> changedRows = new ArrayList<>();
+        for (T row : rows) {
+            T merged = table.mergeFunc().apply(currentRows.get(table.keyFunc().apply(row)), row);
+            if (merged != null) {
+                changedRows.add(merged);
+            }
+        }
+        if (changedRows.isEmpty()) {
+            return 0;
+        }
+
+        jdbcTemplate.batchUpdate("MERGE INTO %s (%s) KEY (%s) VALUES (%s)".formatted(
+                        tableName,
+                        String.join(", ", table.columns()),
+                        table.columns().get(0),
+                        String.join(", ", table.columns().stream().map(c -> "?").toList())),
+                changedRows.stream()
+                        .map(table.valuesFunc())
+                        .toList());
+        return changedRows.size();
+    }
+
+    /**
+     * Reference table description
+     *
+     * @param name       table name without schema
+     * @param columns    written columns. The first one is the key
+     * @param rowMapper  maps the current row. All the columns are selected
+     * @param keyFunc    key of the row
+     * @param valuesFunc column values of the row in the same order as columns
+     * @param mergeFunc  function of the current row (<code>null</code> if there is no such row) and the incoming one.
+     *                   Returns the row to write or <code>null</code> if nothing changed
+     * @param <T>        type of the row
+     */
+    public record ReferenceTable<T>(
+            String name,
+            List<String> columns,
+            RowMapper<T> rowMapper,
+            Function<T, Object> keyFunc,
+            Function<T, Object[]> valuesFunc,
+            BinaryOperator<T> mergeFunc
+    ) {
+    }
+}
@@ -6,7 +6,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.viktor235.gameretriever.exception.AppException;
 import com.github.viktor235.gameretriever.exception.AuthException;
 import com.github.viktor235.gameretriever.model.AuthData;
-import com.github.viktor235.gameretriever.shell.ShellHelper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -23,7 +22,6 @@ import java.nio.file.Paths;
 public class AuthService {
 
     private final IgdbService igdbService;
-    private final ShellHelper shellHelper;
     private final ObjectMapper objectMapper;
 
     private static final String AUTH_FILE_PATH = "auth.json";
@@ -33,9 +31,10 @@ public class AuthService {
     @PostConstruct
     private void init() throws AppException {
         try {
-            readFile();
+            loadCredentials();
         } catch (AppException e) {
-            shellHelper.printError(e.getMessage());
+            // Logged instead of printed, so the service doesn't need the shell terminal (see batch mode)
+            log.error(e.getMessage());
         }
     }
 
@@ -58,16 +57,29 @@ public class AuthService {
         igdbService.setCredentials("", "");
     }
 
-    private void readFile() throws AppException {
+    /**
+     * @return <code>true</code> if the credentials are loaded or received by {@link #auth(String, String)}
+     */
+    public boolean hasCredentials() {
+        return authData != null;
+    }
+
+    /**
+     * Passes credentials from the auth data file to IGDB service. Done on startup
+     *
+     * @return <code>false</code> if there is no auth data file
+     */
+    private boolean loadCredentials() throws AppException {
         try {
             File file = new File(AUTH_FILE_PATH);
             if (file.exists()) {
                 authData = objectMapper.readValue(file, AuthData.class);
                 igdbService.setCredentials(authData.clientId(), authData.accessToken());
-            } else {
-                authData = null;
-                igdbService.setCredentials("", "");
+                return true;
             }
+            authData = null;
+            igdbService.setCredentials("", "");
+            return false;
         } catch (IOException e) {
             throw new AppException("Error while reading auth data file: " + e.getMessage(), e);
         }
@@ -2,77 +2,251 @@ package com.github.viktor235.gameretriever.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.mustachejava.DefaultMustacheFactory;
-import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheException;
 import com.github.mustachejava.MustacheFactory;
 import com.github.viktor235.gameretriever.exception.AppException;
+import com.github.viktor235.gameretriever.helper.RegexLiterals;
+import com.github.viktor235.gameretriever.helper.SqlLiterals;
 import com.github.viktor235.gameretriever.model.converter.Converter;
 import com.github.viktor235.gameretriever.model.converter.Handler;
+import com.github.viktor235.gameretriever.repository.ExportRepository;
+import com.github.viktor235.gameretriever.service.helper.CompiledConverter;
+import com.github.viktor235.gameretriever.service.helper.CompiledConverter.CompiledHandler;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ConverterService {
 
     private final ObjectMapper objectMapper;
 
+    private final ExportRepository exportRepository;
+
     private final MustacheFactory mustacheFactory = new DefaultMustacheFactory();
-    private Map<String, Converter> converters;
+    /**
+     * Row values are SQL literals, so they are written without HTML escaping
+     */
+    private final MustacheFactory rowMustacheFactory = new DefaultMustacheFactory() {
+        @Override
+        public void encode(String value, Writer writer) {
+            try {
+                writer.write(value);
+            } catch (IOException e) {
+                throw new MustacheException("Failed to write value: " + value, e);
+            }
+        }
+    };
+    /**
+     * Converters by name. Entries are replaced as a whole, so a running conversion keeps its converter
+     */
+    private final Map<String, ConverterEntry> converters = new ConcurrentSkipListMap<>();
+    /**
+     * Watches converter folder and reloads changed files. <code>null</code> if watching is not supported,
+     * then all files are reloaded on every {@link #getConverters()} call
+     */
+    private WatchService watchService;
+    /**
+     * Count of threads to convert input chunks. <code>1</code> (default) means sequential line by line conversion,
+     * <code>0</code> means count of processors
+     */
+    @Value(value = "${app.converter.parallelism:1}")
+    private int parallelism;
+    private ForkJoinPool chunkPool;
 
     private static final String CONVERTER_DIR = "converters";
+    private static final String CONVERTER_EXTENSION = ".json";
     private static final int REGEX_FLAGS = 0;
+    /**
+     * Count of input lines between progress messages
+     */
+    private static final int PROGRESS_STEP = 100_000;
+    /**
+     * Approximate size of an input chunk in parallel conversion. Chunks are extended to the line end
+     */
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
 
     @PostConstruct
     private void init() throws AppException {
-        readConverterFiles();
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        if (parallelism > 1) {
+            chunkPool = new ForkJoinPool(parallelism);
+        }
+
+        Path dir = getConverterDir();
+        readConverterFiles(dir);
+        try {
+            watchService = dir.getFileSystem().newWatchService();
+            dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            Thread watcher = new Thread(() -> watchConverterFiles(dir), "converter-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("Converter folder watching is not available: {}", e.getMessage());
+            watchService = null;
+        }
     }
 
-    public Map<String, Converter> getConverters() {
-        readConverterFiles();
-        return converters;
+    @PreDestroy
+    private void destroy() throws IOException {
+        if (chunkPool != null) {
+            chunkPool.shutdownNow();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
     }
 
-    private void readConverterFiles() throws AppException {
-        converters = new LinkedHashMap<>();
-        try {
-            for (final File fileEntry : getFilesByExtension(CONVERTER_DIR, "json")) {
-                if (!fileEntry.isDirectory()) {
-                    Converter converter = objectMapper.readValue(fileEntry, Converter.class);
-                    converters.put(removeExtension(fileEntry.getName()), converter);
-                }
+    /**
+     * @return converters by name
+     * @throws AppException when a converter file is broken
+     */
+    public Map<String, CompiledConverter> getConverters() throws AppException {
+        if (watchService == null) {
+            readConverterFiles(getConverterDir());
+        }
+        Map<String, CompiledConverter> result = new LinkedHashMap<>();
+        for (ConverterEntry entry : converters.values()) {
+            if (entry.error() != null) {
+                throw entry.error();
+            }
+            result.put(entry.converter().name(), entry.converter());
+        }
+        return result;
+    }
+
+    private void readConverterFiles(Path dir) throws AppException {
+        Set<String> names = new HashSet<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(this::isConverterFile).toList()) {
+                names.add(readConverterFile(file));
             }
         } catch (IOException e) {
             throw new AppException("Error while reading converter files: " + e.getMessage(), e);
         }
+        converters.keySet().retainAll(names);
+    }
+
+    /**
+     * Reads and compiles the converter file. Errors are kept in the cache and thrown on use
+     *
+     * @return converter name
+     */
+    private String readConverterFile(Path file) {
+        String name = removeExtension(file.getFileName().toString());
+        ConverterEntry entry;
+        try {
+            Converter converter = objectMapper.readValue(file.toFile(), Converter.class);
+            entry = new ConverterEntry(compile(name, converter), null);
+        } catch (IOException e) {
+            entry = new ConverterEntry(null, new AppException("Error while reading converter file '%s': %s"
+                    .formatted(file, e.getMessage()), e));
+        } catch (AppException e) {
+            entry = new ConverterEntry(null, e);
+        }
+        converters.put(name, entry);
+        return name;
+    }
+
+    private void watchConverterFiles(Path dir) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        // Events are lost, so all files are read again. The next events retry a failed reading
+                        try {
+                            readConverterFiles(dir);
+                        } catch (AppException e) {
+                            log.error("Error while reloading converters: {}", e.getMessage(), e);
+                        }
+                        continue;
+                    }
+                    Path file = dir.resolve((Path) event.context());
+                    if (!file.getFileName().toString().toLowerCase().endsWith(CONVERTER_EXTENSION)) {
+                        continue;
+                    }
+                    if (event.kind() == ENTRY_DELETE || !Files.isRegularFile(file)) {
+                        converters.remove(removeExtension(file.getFileName().toString()));
+                    } else {
+                        readConverterFile(file);
+                    }
+                }
+                if (!key.reset()) {
+                    log.warn("Converter folder is not available anymore. Converters are not reloaded");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Application is stopping
+        }
     }
 
-    private File[] getFilesByExtension(String folderPath, String extension) {
-        File folder = new File(folderPath);
+    private Path getConverterDir() throws AppException {
+        File folder = new File(CONVERTER_DIR);
         if (!folder.exists()) {
             folder.mkdir();
         }
         if (!folder.exists() || !folder.isDirectory()) {
             throw new AppException("Converter folder '%s' not found".formatted(CONVERTER_DIR));
         }
-        return folder.listFiles((dir, name) ->
-                name.toLowerCase().endsWith("." + extension)
-        );
+        return folder.toPath();
+    }
+
+    private boolean isConverterFile(Path file) {
+        return Files.isRegularFile(file) && file.getFileName().toString().toLowerCase().endsWith(CONVERTER_EXTENSION);
     }
 
     private String removeExtension(String fileName) {
@@ -82,32 +256,125 @@ public class ConverterService {
         return fileName;
     }
 
+    private CompiledConverter compile(String name, Converter converterCfg) throws AppException {
+        if (CollectionUtils.isEmpty(converterCfg.getHandlers())) {
+            throw new AppException("Converter '%s' does not contain handlers".formatted(name));
+        }
+        List<CompiledHandler> handlers = new ArrayList<>();
+        for (Handler handler : converterCfg.getHandlers()) {
+            handlers.add(compile(name, handler));
+        }
+        if (converterCfg.getInputFile() == null
+                && handlers.stream().anyMatch(h -> h.type() == Handler.Type.REGEX_GENERATOR)) {
+            throw new AppException("Converter '%s': 'inputFile' is required for 'regex-generator' handlers".formatted(name));
+        }
+        return new CompiledConverter(name, converterCfg.getInputFile(), converterCfg.getOutputFile(), List.copyOf(handlers));
+    }
+
+    private CompiledHandler compile(String converterName, Handler handler) throws AppException {
+        String handlerDescription = "Converter '%s', handler '%s'".formatted(converterName, handler.getName());
+        if (handler.getType() == null) {
+            throw new AppException(handlerDescription + ": handler type is missing");
+        }
+        try {
+            return switch (handler.getType()) {
+                case REGEX_GENERATOR -> {
+                    if (handler.getPattern() == null || handler.getSubstitution() == null) {
+                        throw new AppException(handlerDescription + ": 'pattern' and 'substitution' are required");
+                    }
+                    yield new CompiledHandler(handler.getType(), handler.getName(),
+                            handler.getFilter() == null ? null : Pattern.compile(handler.getFilter(), REGEX_FLAGS),
+                            handler.getFilter() == null ? "" : RegexLiterals.prefix(handler.getFilter()),
+                            Pattern.compile(handler.getPattern(), REGEX_FLAGS),
+                            RegexLiterals.prefix(handler.getPattern()),
+                            handler.getSubstitution(),
+                            null, false, null, null);
+                }
+                case TEMPLATE -> {
+                    if (handler.getTemplate() == null) {
+                        throw new AppException(handlerDescription + ": 'template' is required");
+                    }
+                    yield new CompiledHandler(handler.getType(), handler.getName(), null, null, null, null, null,
+                            mustacheFactory.compile(new StringReader(handler.getTemplate()), handler.getName()),
+                            Boolean.TRUE.equals(handler.getSkipIfEmpty()), null, null);
+                }
+                case ROW_TEMPLATE -> {
+                    if (handler.getTemplate() == null || handler.getTable() == null) {
+                        throw new AppException(handlerDescription + ": 'template' and 'table' are required");
+                    }
+                    yield new CompiledHandler(handler.getType(), handler.getName(), null, null, null, null, null,
+                            rowMustacheFactory.compile(new StringReader(handler.getTemplate()), handler.getName()),
+                            false, handler.getTable().value(), handler.getWhere());
+                }
+            };
+        } catch (PatternSyntaxException | MustacheException e) {
+            throw new AppException("%s: %s".formatted(handlerDescription, e.getMessage()), e);
+        }
+    }
+
     public void convert(String converterName, Consumer<String> progressCallback) {
-        Converter converterCfg = converters.get(converterName);
-        if (converterCfg == null) {
+        CompiledConverter converter = getConverters().get(converterName);
+        if (converter == null) {
             throw new AppException("Unknown SQL converter '%s'".formatted(converterName));
         }
-        convert(converterCfg, progressCallback);
+        convert(converter, progressCallback);
     }
 
-    public void convert(Converter converterCfg,
+    /**
+     * Input file is read once: every line goes to every regex handler. Output keeps the handler order: the first regex
+     * handler writes straight into the output file, later regex handlers write into temp files, which are appended
+     * after the input is read. Templates with <code>skipIfEmpty</code> are rendered after the input is read too
+     */
+    public void convert(CompiledConverter converter,
                         Consumer<String> progressCallback) {
-        if (CollectionUtils.isEmpty(converterCfg.getHandlers())) {
-            throw new AppException("Converter does not contain handlers");
-        }
-
-        String inputFile = converterCfg.getInputFile();
-        String outputFile = converterCfg.getOutputFile();
+        String inputFile = converter.inputFile();
+        String outputFile = converter.outputFile();
+        List<CompiledHandler> handlers = converter.handlers();
 
+        List<Section> sections = new ArrayList<>();
         try (PrintWriter outputStream = new PrintWriter(outputFile)) {
-            int handlerIndex = 0;
-            for (Handler handler : converterCfg.getHandlers()) {
-                progressCallback.accept("(handler %d/%d) %s".formatted(
-                        ++handlerIndex, converterCfg.getHandlers().size(), handler.getName()));
-
-                switch (handler.getType()) {
-                    case REGEX_GENERATOR -> handleRegexGenerator(inputFile, outputStream, handler);
-                    case TEMPLATE -> handleTemplate(handler.getTemplate(), outputStream, handler);
+            try {
+                for (CompiledHandler handler : handlers) {
+                    boolean regex = handler.type() == Handler.Type.REGEX_GENERATOR;
+                    if (sections.isEmpty() && !regex && !handler.skipIfEmpty()) {
+                        // Templates before the first regex handler are written at once
+                        handleTemplate(handler, outputStream, progressCallback);
+                        continue;
+                    }
+                    Section section = new Section(handler);
+                    if (regex && sections.isEmpty()) {
+                        section.output = outputStream;
+                    } else if (regex) {
+                        section.tempFile = Files.createTempFile("converter-section", ".tmp");
+                        section.output = new PrintWriter(Files.newBufferedWriter(section.tempFile));
+                    }
+                    sections.add(section);
+                }
+
+                handleRegexGenerators(inputFile, sections, progressCallback);
+
+                int handlerIndex = handlers.size() - sections.size();
+                for (int i = 0; i < sections.size(); i++) {
+                    Section section = sections.get(i);
+                    progressCallback.accept("(handler %d/%d) %s".formatted(
+                            ++handlerIndex, handlers.size(), section.handler.name()));
+                    if (section.handler.type() != Handler.Type.REGEX_GENERATOR) {
+                        if (!section.handler.skipIfEmpty() || hasGeneratedLines(sections, i + 1)) {
+                            handleTemplate(section.handler, outputStream, progressCallback);
+                        }
+                    } else if (section.tempFile != null) {
+                        section.output.close();
+                        try (BufferedReader sectionInput = Files.newBufferedReader(section.tempFile)) {
+                            sectionInput.transferTo(outputStream);
+                        }
+                    }
+                }
+            } finally {
+                for (Section section : sections) {
+                    if (section.tempFile != null) {
+                        section.output.close();
+                        Files.deleteIfExists(section.tempFile);
+                    }
                 }
             }
         } catch (IOException e) {
@@ -115,46 +382,239 @@ public class ConverterService {
         }
     }
 
-    private void handleRegexGenerator(String inputFile, PrintWriter outputStream, Handler handler) throws IOException {
-        if (handler.getPattern() == null || handler.getSubstitution() == null) {
+    /**
+     * @return <code>true</code> if regex sections from the index up to the next template generated lines
+     */
+    private static boolean hasGeneratedLines(List<Section> sections, int fromIndex) {
+        for (int i = fromIndex; i < sections.size(); i++) {
+            Section section = sections.get(i);
+            if (section.handler.type() != Handler.Type.REGEX_GENERATOR) {
+                return false;
+            }
+            if (section.generated) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void handleRegexGenerators(String inputFile, List<Section> sections, Consumer<String> progressCallback) throws IOException {
+        List<Section> regexSections = sections.stream()
+                .filter(s -> s.handler.type() == Handler.Type.REGEX_GENERATOR)
+                .toList();
+        if (regexSections.isEmpty()) {
+            return;
+        }
+        if (chunkPool != null) {
+            handleRegexGeneratorsInParallel(inputFile, regexSections, progressCallback);
             return;
         }
 
         try (BufferedReader input = new BufferedReader(new FileReader(inputFile))) {
-            Pattern filter = handler.getFilter() == null ? null : Pattern.compile(handler.getFilter(), REGEX_FLAGS);
-            Pattern pattern = Pattern.compile(handler.getPattern(), REGEX_FLAGS);
-
+            long lineCount = 0;
             String line;
             while ((line = input.readLine()) != null) {
-                if (!suitableLine(line, filter)) {
-                    continue;
+                checkInterrupted();
+                for (Section section : regexSections) {
+                    String newLine = section.handler.apply(line);
+                    if (newLine != null) {
+                        section.generated = true;
+                        section.output.println(newLine);
+                    }
+                }
+                if (++lineCount % PROGRESS_STEP == 0) {
+                    progressCallback.accept("Reading the input: %d lines".formatted(lineCount));
+                }
+            }
+        }
+    }
+
+    /**
+     * Memory-maps the input and splits it into line-aligned chunks. Chunks are converted on the fork-join pool,
+     * results are written in the chunk order. Only a limited window of chunks is in work, so memory use is bounded
+     */
+    private void handleRegexGeneratorsInParallel(String inputFile, List<Section> regexSections,
+                                                 Consumer<String> progressCallback) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(inputFile), StandardOpenOption.READ)) {
+            long size = channel.size();
+            Deque<Chunk> chunks = new ArrayDeque<>();
+            long chunkStart = 0;
+            while (chunkStart < size || !chunks.isEmpty()) {
+                while (chunkStart < size && chunks.size() < parallelism * 2) {
+                    long chunkEnd = findChunkEnd(channel, chunkStart, size);
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkEnd - chunkStart);
+                    chunks.add(new Chunk(chunkEnd, chunkPool.submit(() -> convertChunk(buffer, regexSections))));
+                    chunkStart = chunkEnd;
                 }
 
-                Matcher matcher = pattern.matcher(line);
-                if (!matcher.matches()) {
-                    continue;
+                if (Thread.currentThread().isInterrupted()) {
+                    chunks.forEach(c -> c.result().cancel(true));
+                    checkInterrupted();
+                }
+                Chunk chunk = chunks.poll();
+                List<StringBuilder> results = awaitChunk(inputFile, chunk, chunks);
+                for (int i = 0; i < regexSections.size(); i++) {
+                    if (!results.get(i).isEmpty()) {
+                        regexSections.get(i).generated = true;
+                        regexSections.get(i).output.append(results.get(i));
+                    }
                 }
+                progressCallback.accept("Reading the input: %d/%d MB".formatted(chunk.end() >> 20, size >> 20));
+            }
+        }
+    }
 
-                String newLine = matcher.replaceAll(handler.getSubstitution());
-                outputStream.println(newLine);
+    /**
+     * @return chunk results
+     * @throws AppException when the chunk conversion failed. The pending chunks are cancelled
+     */
+    private static List<StringBuilder> awaitChunk(String inputFile, Chunk chunk, Deque<Chunk> pendingChunks)
+            throws AppException {
+        try {
+            return chunk.result().join();
+        } catch (CancellationException e) {
+            pendingChunks.forEach(c -> c.result().cancel(true));
+            throw new AppException("Conversion interrupted", e);
+        } catch (RuntimeException e) {
+            pendingChunks.forEach(c -> c.result().cancel(true));
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof AppException appException) {
+                throw appException;
             }
+            throw new AppException("Error while converting '%s': %s".formatted(inputFile, cause.getMessage()), cause);
         }
     }
 
-    private boolean suitableLine(String line, Pattern filter) {
-        if (filter == null) {
-            return true;
+    /**
+     * @throws AppException when the thread is interrupted (job cancellation)
+     */
+    private static void checkInterrupted() throws AppException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new AppException("Conversion interrupted");
         }
-        return filter.matcher(line).find();
     }
 
-    private void handleTemplate(String template, PrintWriter outputStream, Handler handler) {
-        Mustache m = mustacheFactory.compile(new StringReader(template), handler.getName());
-        Map<String, Object> ctx = Map.of(
+    /**
+     * @return position after the first line end at or after <code>start + CHUNK_SIZE</code>
+     */
+    private long findChunkEnd(FileChannel channel, long start, long size) throws IOException {
+        long position = Math.min(start + CHUNK_SIZE, size);
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * @return generated text of every section
+     */
+    private List<StringBuilder> convertChunk(ByteBuffer chunk, List<Section> regexSections) {
+        // Chunks end with a line feed, so a multibyte character is never split
+        String text = Charset.defaultCharset().decode(chunk).toString();
+        List<StringBuilder> results = regexSections.stream()
+                .map(s -> new StringBuilder())
+                .toList();
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            int nextLineStart = lineEnd < 0 ? text.length() : lineEnd + 1;
+            if (lineEnd < 0) {
+                lineEnd = text.length();
+            }
+            if (lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            String line = text.substring(lineStart, lineEnd);
+            for (int i = 0; i < regexSections.size(); i++) {
+                String newLine = regexSections.get(i).handler.apply(line);
+                if (newLine != null) {
+                    results.get(i).append(newLine).append(System.lineSeparator());
+                }
+            }
+            lineStart = nextLineStart;
+        }
+        return results;
+    }
+
+    private void handleTemplate(CompiledHandler handler, PrintWriter outputStream, Consumer<String> progressCallback) {
+        Map<String, Object> ctx = new HashMap<>(Map.of(
                 "timestamp", Timestamp.from(Instant.now()).getTime(),
                 "username", System.getProperty("user.name")
-        );
-        m.execute(outputStream, ctx);
+        ));
+        if (handler.type() == Handler.Type.ROW_TEMPLATE) {
+            handleRowTemplate(handler, outputStream, ctx, progressCallback);
+            return;
+        }
+        handler.template().execute(outputStream, ctx);
         outputStream.flush();
     }
+
+    /**
+     * Renders the template for every table row. Column values are SQL literals: <code>'text'</code>, <code>NULL</code>
+     */
+    private void handleRowTemplate(CompiledHandler handler, PrintWriter outputStream, Map<String, Object> ctx,
+                                   Consumer<String> progressCallback) {
+        long[] rowCount = {0};
+        exportRepository.forEachRow(handler.table(), handler.where(), row -> {
+            row.forEach((column, value) -> ctx.put(column, SqlLiterals.of(value)));
+            handler.template().execute(outputStream, ctx);
+            outputStream.println();
+            if (++rowCount[0] % PROGRESS_STEP == 0) {
+                progressCallback.accept("%s: %d rows".formatted(handler.name(), rowCount[0]));
+            }
+        });
+        outputStream.flush();
+    }
+
+    /**
+     * Output section of a handler
+     */
+    private static class Section {
+        private final CompiledHandler handler;
+        private PrintWriter output;
+        /**
+         * File to keep the section until the previous sections are written
+         */
+        private Path tempFile;
+        /**
+         * The regex handler generated at least one line
+         */
+        private boolean generated;
+
+        private Section(CompiledHandler handler) {
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * Input chunk in work
+     *
+     * @param end    position after the chunk in the input file
+     * @param result generated text of every section
+     */
+    private record Chunk(
+            long end,
+            ForkJoinTask<List<StringBuilder>> result
+    ) {
+    }
+
+    /**
+     * Cached converter file: either the compiled converter or the error
+     */
+    private record ConverterEntry(
+            CompiledConverter converter,
+            AppException error
+    ) {
+    }
 }
@@ -0,0 +1,179 @@
+package com.github.viktor235.gameretriever.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.viktor235.gameretriever.exception.AppException;
+import com.github.viktor235.gameretriever.helper.OutputFiles;
+import com.github.viktor235.gameretriever.model.ExportFormat;
+import com.github.viktor235.gameretriever.model.JobResources;
+import com.github.viktor235.gameretriever.repository.ExportRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Exports DB tables as data files for consumers which don't need SQL. Rows are streamed from a forward-only cursor
+ * straight into the files, so memory use doesn't depend on the catalog size
+ */
+@Service
+@RequiredArgsConstructor
+public class ExportService {
+
+    private static final int PROGRESS_STEP = 100_000;
+    private static final String CSV_LINE_SEPARATOR = "\r\n";
+
+    private final ExportRepository exportRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value(value = "${app.export.dir}")
+    @Getter
+    private String exportDir;
+
+    /**
+     * Writes every exported table to <code>&lt;export dir&gt;/&lt;table&gt;.&lt;extension&gt;</code>. Files are replaced
+     */
+    public void export(ExportFormat format, Consumer<String> progressCallback) throws AppException {
+        for (String table : ExportRepository.TABLES) {
+            Path file = getFile(table, format);
+            progressCallback.accept("Exporting " + file);
+            exportTable(table, format, file, values -> {
+            }, progressCallback);
+        }
+    }
+
+    /**
+     * @return data used by the export: exported tables and the result files
+     */
+    public JobResources getResources(ExportFormat format) {
+        return JobResources.NONE
+                .read(ExportRepository.TABLES.stream().map(JobResources::table).toList())
+                .write(ExportRepository.TABLES.stream()
+                        .map(t -> JobResources.file(getFile(t, format).toString()))
+                        .toList());
+    }
+
+    private Path getFile(String table, ExportFormat format) {
+        return Path.of(exportDir, table.toLowerCase() + "." + format.getExtension());
+    }
+
+    /**
+     * Writes the table to the file. The file is replaced
+     *
+     * @param rowListener gets column values of every written row
+     */
+    public void exportTable(String table, ExportFormat format, Path file, Consumer<Object[]> rowListener,
+                            Consumer<String> progressCallback) throws AppException {
+        try (Writer output = OutputFiles.newWriter(file, StandardCharsets.UTF_8)) {
+            switch (format) {
+                case JSONL -> writeJsonLines(table, output, rowListener, progressCallback);
+                case CSV -> writeCsv(table, output, rowListener, progressCallback);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new AppException("Error while exporting table '%s' into '%s'".formatted(table, file), e);
+        }
+    }
+
+    /**
+     * JSON object per row with camel case column names: <code>{"id":1,"infoLink":"...","name":"..."}</code>
+     */
+    private void writeJsonLines(String table, Writer output, Consumer<Object[]> rowListener,
+                                Consumer<String> progressCallback) throws IOException {
+        List<String> fieldNames = exportRepository.getFieldNames(table);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            // No root value separator (a space by default), every line is a bare JSON object
+            generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+            long[] rowCount = {0};
+            exportRepository.forEachRowValues(table, null, values -> {
+                try {
+                    generator.writeStartObject();
+                    for (int i = 0; i < values.length; i++) {
+                        generator.writeObjectField(fieldNames.get(i), values[i]);
+                    }
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rowListener.accept(values);
+                reportProgress(table, ++rowCount[0], progressCallback);
+            });
+        }
+    }
+
+    /**
+     * RFC-4180 CSV: header line of column names, CRLF line breaks, <code>NULL</code> as an empty field
+     */
+    private void writeCsv(String table, Writer output, Consumer<Object[]> rowListener,
+                          Consumer<String> progressCallback) throws IOException {
+        List<String> columns = exportRepository.getColumns(table);
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            appendCsvField(line, i, columns.get(i));
+        }
+        output.append(line).append(CSV_LINE_SEPARATOR);
+
+        long[] rowCount = {0};
+        exportRepository.forEachRowValues(table, null, values -> {
+            line.setLength(0);
+            for (int i = 0; i < values.length; i++) {
+                appendCsvField(line, i, values[i]);
+            }
+            try {
+                output.append(line).append(CSV_LINE_SEPARATOR);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rowListener.accept(values);
+            reportProgress(table, ++rowCount[0], progressCallback);
+        });
+    }
+
+    /**
+     * Fields with separators, quotes or line breaks are quoted, quotes inside are doubled. <code>NULL</code> is an
+     * empty field, an empty string is quoted to differ from it. Leading and trailing whitespace is quoted too, as CSV
+     * readers (H2 <code>CSVREAD</code>) trim unquoted fields
+     */
+    private static void appendCsvField(StringBuilder line, int index, Object value) {
+        if (index > 0) {
+            line.append(',');
+        }
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        boolean quoted = text.isEmpty() || text.charAt(0) <= ' ' || text.charAt(text.length() - 1) <= ' ';
+        for (int i = 0; i < text.length() && !quoted; i++) {
+            char c = text.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quoted) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private static void reportProgress(String table, long rowCount, Consumer<String> progressCallback) {
+        if (rowCount % PROGRESS_STEP == 0) {
+            progressCallback.accept("%s: %d rows".formatted(table, rowCount));
+        }
+    }
+}
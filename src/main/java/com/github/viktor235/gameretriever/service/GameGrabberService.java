@@ -1,49 +1,98 @@
 package com.github.viktor235.gameretriever.service;
 
 import com.github.viktor235.gameretriever.exception.AppException;
+import com.github.viktor235.gameretriever.helper.ProgressMeter;
+import com.github.viktor235.gameretriever.model.JobResources;
 import com.github.viktor235.gameretriever.model.PlatformStats;
 import com.github.viktor235.gameretriever.model.entity.Game;
-import com.github.viktor235.gameretriever.model.entity.GamePlatform;
+import com.github.viktor235.gameretriever.model.entity.IngestionCheckpoint;
 import com.github.viktor235.gameretriever.model.entity.Platform;
+import com.github.viktor235.gameretriever.model.entity.PlatformSync;
+import com.github.viktor235.gameretriever.repository.GameBulkRepository;
 import com.github.viktor235.gameretriever.repository.GamePlatformRepository;
 import com.github.viktor235.gameretriever.repository.GameRepository;
+import com.github.viktor235.gameretriever.repository.IngestionCheckpointRepository;
 import com.github.viktor235.gameretriever.repository.PlatformRepository;
+import com.github.viktor235.gameretriever.repository.PlatformStatsRepository;
+import com.github.viktor235.gameretriever.repository.PlatformSyncRepository;
+import com.github.viktor235.gameretriever.repository.ReferenceBulkRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class GameGrabberService {
 
+    /**
+     * Data changed by platforms update and selection
+     */
+    public static final JobResources PLATFORMS_UPDATE = JobResources.NONE
+            .write(JobResources.table("PLATFORM"));
+    /**
+     * Data used by full and delta games updates, including staging tables and watermarks
+     */
+    public static final JobResources GAMES_UPDATE = JobResources.NONE
+            .read(JobResources.table("PLATFORM"))
+            .write(JobResources.table("GAME"), JobResources.table("GAME_PLATFORM"));
+
     private final IgdbService igdbService;
     private final PlatformRepository platformRepository;
     private final GameRepository gameRepository;
     private final GamePlatformRepository gamePlatformRepository;
+    private final PlatformSyncRepository platformSyncRepository;
+    private final PlatformStatsRepository platformStatsRepository;
+    private final GameBulkRepository gameBulkRepository;
+    private final ReferenceBulkRepository referenceBulkRepository;
+    private final IngestionCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Number of platforms requested from IGDB at the same time. <code>1</code> means sequential grabbing
+     */
+    @Value(value = "${app.grabber.parallelism:1}")
+    private int parallelism;
+    /**
+     * Sync watermark is the update start time minus this margin, so games updated on IGDB during the update and
+     * clock differences are covered by the next delta sync
+     */
+    @Value(value = "${app.grabber.watermark-margin:5m}")
+    private Duration watermarkMargin;
 
+    /**
+     * Platforms are collected from all pages and upserted at once. Unchanged platforms are not written
+     */
     @Transactional
     public void grabPlatforms() throws AppException {
+        List<Platform> platforms = new ArrayList<>();
         igdbService.getPlatforms((buffer) -> {
             for (proto.Platform apiPlatform : buffer) {
-                boolean active = platformRepository.findById(apiPlatform.getId())
-                        .map(Platform::getActive)
-                        .orElse(false);
-
-                Platform dbPlatform = Platform.builder()
+                platforms.add(Platform.builder()
                         .id(apiPlatform.getId())
                         .name(apiPlatform.getName())
-                        .shortName(apiPlatform.getAbbreviation())
-                        .active(active).build();
-                platformRepository.save(dbPlatform);
+                        .shortName(apiPlatform.getAbbreviation()).build());
             }
         });
+        referenceBulkRepository.upsert(ReferenceBulkRepository.PLATFORM, platforms);
     }
 
     @Transactional(readOnly = true)
@@ -59,12 +108,140 @@ public class GameGrabberService {
                 .forEach(p -> p.setActive(platformIds.contains(p.getId())));
     }
 
-    @Transactional
-    public void grabGames(Consumer<String> progressCallback) throws AppException {
-        progressCallback.accept("Erasing saved games");
-        eraseTable(gamePlatformRepository);
-        eraseTable(gameRepository);
+    /**
+     * Full reload: games are loaded into staging tables page by page, then the staging tables replace the saved ones.
+     * Every page is saved together with the platform {@link IngestionCheckpoint}
+     *
+     * @param resume continue the interrupted update from the last saved pages instead of starting from scratch
+     */
+    public void grabGames(boolean resume, Consumer<String> progressCallback) throws AppException {
+        recoverInterruptedSwap(progressCallback);
+        List<Platform> activePlatforms = platformRepository.findByActiveTrue();
+        Map<Long, IngestionCheckpoint> checkpoints = prepareCheckpoints(resume, activePlatforms, progressCallback);
+        Map<Long, Duration> durations = new ConcurrentHashMap<>();
+
+        List<Platform> pendingPlatforms = activePlatforms.stream()
+                .filter(p -> !checkpoints.get(p.getId()).isCompleted())
+                .toList();
+        if (activePlatforms.isEmpty()) {
+            progressCallback.accept("No active platforms");
+        } else if (!pendingPlatforms.isEmpty()) {
+            progressCallback.accept("Counting games");
+            Map<Long, Long> gameCounts = igdbService.getGameCounts(pendingPlatforms.stream()
+                    .map(Platform::getId)
+                    .toList());
+            ProgressMeter meter = new ProgressMeter(gameCounts.entrySet().stream()
+                    .mapToLong(e -> Math.max(0, e.getValue() - checkpoints.get(e.getKey()).getGameCount()))
+                    .sum());
+            GrabContext context = new GrabContext(checkpoints, gameCounts, meter, new ConcurrentHashMap<>(), durations,
+                    progressCallback);
+            if (parallelism > 1 && pendingPlatforms.size() > 1) {
+                grabGamesConcurrently(pendingPlatforms, context);
+            } else {
+                grabGamesSequentially(pendingPlatforms, context);
+            }
+        }
+
+        progressCallback.accept("Replacing saved games");
+        gameBulkRepository.swapStagingTables();
+        Instant syncedAt = Instant.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            platformSyncRepository.deleteAllInBatch();
+            platformStatsRepository.deleteAll();
+            checkpoints.values().forEach(c -> {
+                platformSyncRepository.save(PlatformSync.builder()
+                        .platformId(c.getPlatformId())
+                        .gamesUpdatedAt(c.getGamesUpdatedAt()).build());
+                platformStatsRepository.save(c.getPlatformId(), c.getGameCount(), syncedAt,
+                        durations.get(c.getPlatformId()));
+            });
+            checkpointRepository.deleteAllInBatch();
+        });
+    }
+
+    private void recoverInterruptedSwap(Consumer<String> progressCallback) {
+        if (gameBulkRepository.recoverInterruptedSwap()) {
+            progressCallback.accept("Recovered the interrupted replacement of saved games");
+        }
+    }
+
+    /**
+     * @return checkpoints of all given platforms. Saved checkpoints are used only if the interrupted update is
+     * resumable: staging tables exist and no platform was deactivated since
+     */
+    private Map<Long, IngestionCheckpoint> prepareCheckpoints(boolean resume, List<Platform> platforms,
+                                                              Consumer<String> progressCallback) {
+        Map<Long, IngestionCheckpoint> checkpoints = new HashMap<>();
+        if (resume && gameBulkRepository.stagingTablesExist()) {
+            checkpoints = checkpointRepository.findAll().stream()
+                    .collect(Collectors.toMap(IngestionCheckpoint::getPlatformId, Function.identity()));
+            Set<Long> platformIds = platforms.stream()
+                    .map(Platform::getId)
+                    .collect(Collectors.toSet());
+            if (platformIds.containsAll(checkpoints.keySet())) {
+                progressCallback.accept("Resuming the interrupted update");
+                for (Platform platform : platforms) {
+                    checkpoints.putIfAbsent(platform.getId(), newCheckpoint(platform));
+                }
+                return checkpoints;
+            }
+            progressCallback.accept("Active platforms changed since the interrupted update. Starting from scratch");
+            checkpoints.clear();
+        }
+
+        progressCallback.accept("Preparing staging tables");
+        gameBulkRepository.createStagingTables();
+        checkpointRepository.deleteAllInBatch();
+        for (Platform platform : platforms) {
+            checkpoints.put(platform.getId(), newCheckpoint(platform));
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Watermark is the time the scan starts, not the max <code>updated_at</code> of the saved games: the scan is
+     * ordered by id, so a game with a lower id can be updated after its page is read
+     */
+    private IngestionCheckpoint newCheckpoint(Platform platform) {
+        return IngestionCheckpoint.builder()
+                .platformId(platform.getId())
+                .gamesUpdatedAt(newWatermark())
+                .build();
+    }
+
+    /**
+     * @return unix time in seconds of the update start minus the safety margin
+     */
+    private long newWatermark() {
+        return Instant.now().minus(watermarkMargin).getEpochSecond();
+    }
+
+    private void grabGamesSequentially(List<Platform> platforms, GrabContext context) throws AppException {
+        int platformIndex = 0;
+        for (Platform dbPlatform : platforms) {
+            platformIndex++;
+
+            IngestionCheckpoint checkpoint = context.checkpoints().get(dbPlatform.getId());
+            int finalPlatformIndex = platformIndex;
+            context.startTimes().put(dbPlatform.getId(), Instant.now());
+            igdbService.getGames(dbPlatform.getId(), checkpoint.getLastGameId(), (buffer) -> {
+                saveGames(dbPlatform, buffer, checkpoint);
+                context.meter().add(buffer.size());
+                context.progressCallback().accept("(platform %d/%d) %s: %d/%d games. Total: %s".formatted(
+                        finalPlatformIndex, platforms.size(), dbPlatform.getName(), checkpoint.getGameCount(),
+                        context.gameCounts().get(dbPlatform.getId()), context.meter()));
+            });
+            completeCheckpoint(checkpoint, context);
+        }
+    }
 
+    /**
+     * Delta sync: requests only games changed since the platform watermark and upserts them.
+     * Platforms without watermark are requested completely. Saved games are not erased
+     */
+    @Transactional
+    public void syncGames(Consumer<String> progressCallback) throws AppException {
+        recoverInterruptedSwap(progressCallback);
         List<Platform> activePlatforms = platformRepository.findByActiveTrue();
         if (activePlatforms.isEmpty()) {
             progressCallback.accept("No active platforms");
@@ -75,47 +252,170 @@ public class GameGrabberService {
         for (Platform dbPlatform : activePlatforms) {
             platformIndex++;
 
+            long watermark = platformSyncRepository.findById(dbPlatform.getId())
+                    .map(PlatformSync::getGamesUpdatedAt)
+                    .orElse(0L);
+            Instant startedAt = Instant.now();
+            long newWatermark = newWatermark();
             AtomicInteger handled = new AtomicInteger();
             int finalPlatformIndex = platformIndex;
-            igdbService.getGames(dbPlatform.getId(), (buffer) -> {
-                buffer.stream()
-                        .map(apiGame -> Game.builder()
-                                .id(apiGame.getId())
-                                .name(apiGame.getName())
-                                .infoLink(apiGame.getUrl()).build())
-                        .forEach(dbGame -> {
-                            gameRepository.save(dbGame);
-                            gamePlatformRepository.save(GamePlatform.builder()
-                                    .game(dbGame)
-                                    .platform(dbPlatform).build());
-                        });
-                progressCallback.accept("(platform %d/%d) %s: handled %d games".formatted(finalPlatformIndex,
+            igdbService.getGamesUpdatedSince(dbPlatform.getId(), watermark, (buffer) -> {
+                upsertGames(dbPlatform, buffer);
+                progressCallback.accept("(platform %d/%d) %s: synced %d changed games".formatted(finalPlatformIndex,
                         activePlatforms.size(), dbPlatform.getName(), handled.addAndGet(buffer.size())));
             });
+            saveWatermark(dbPlatform, newWatermark);
+            Instant syncedAt = Instant.now();
+            platformStatsRepository.saveCounted(dbPlatform.getId(), syncedAt, Duration.between(startedAt, syncedAt));
         }
     }
 
-    @Transactional
+    /**
+     * Requests platforms from IGDB on a bounded worker pool. Workers only fetch pages, the calling thread
+     * persists them, so there is a single DB writer
+     */
+    private void grabGamesConcurrently(List<Platform> platforms, GrabContext context) throws AppException {
+        int threads = Math.min(parallelism, platforms.size());
+        BlockingQueue<PlatformPage> pages = new ArrayBlockingQueue<>(threads * 2);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Platform dbPlatform : platforms) {
+                long afterId = context.checkpoints().get(dbPlatform.getId()).getLastGameId();
+                executor.submit(() -> {
+                    context.startTimes().put(dbPlatform.getId(), Instant.now());
+                    RuntimeException error = null;
+                    try {
+                        igdbService.getGames(dbPlatform.getId(), afterId,
+                                (buffer) -> enqueue(pages, new PlatformPage(dbPlatform, buffer, null)));
+                    } catch (RuntimeException e) {
+                        error = e;
+                    }
+                    enqueue(pages, new PlatformPage(dbPlatform, null, error));
+                });
+            }
+
+            int finished = 0;
+            while (finished < platforms.size()) {
+                PlatformPage page = pages.take();
+                IngestionCheckpoint checkpoint = context.checkpoints().get(page.platform().getId());
+                if (page.isLast()) {
+                    if (page.error() != null) {
+                        throw page.error();
+                    }
+                    completeCheckpoint(checkpoint, context);
+                    finished++;
+                    continue;
+                }
+
+                saveGames(page.platform(), page.games(), checkpoint);
+                context.meter().add(page.games().size());
+                context.progressCallback().accept("(platforms done %d/%d) %s: %d/%d games. Total: %s".formatted(
+                        finished, platforms.size(), page.platform().getName(), checkpoint.getGameCount(),
+                        context.gameCounts().get(page.platform().getId()), context.meter()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException("Games grabbing interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void enqueue(BlockingQueue<PlatformPage> pages, PlatformPage page) {
+        try {
+            pages.put(page);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException("Games grabbing interrupted", e);
+        }
+    }
+
+    /**
+     * Saves games into staging tables and moves the checkpoint forward in the same transaction
+     */
+    private void saveGames(Platform dbPlatform, List<proto.Game> buffer, IngestionCheckpoint checkpoint) {
+        transactionTemplate.executeWithoutResult(status -> {
+            gameBulkRepository.saveStagingGames(dbPlatform, buffer.stream()
+                    .map(this::toDbGame)
+                    .toList());
+            checkpoint.setLastGameId(buffer.get(buffer.size() - 1).getId());
+            checkpoint.setPageCount(checkpoint.getPageCount() + 1);
+            checkpoint.setGameCount(checkpoint.getGameCount() + buffer.size());
+            checkpointRepository.save(checkpoint);
+        });
+    }
+
+    private void completeCheckpoint(IngestionCheckpoint checkpoint, GrabContext context) {
+        checkpoint.setCompleted(true);
+        checkpointRepository.save(checkpoint);
+        Instant startedAt = context.startTimes().get(checkpoint.getPlatformId());
+        if (startedAt != null) {
+            context.durations().put(checkpoint.getPlatformId(), Duration.between(startedAt, Instant.now()));
+        }
+    }
+
+    private void upsertGames(Platform dbPlatform, List<proto.Game> buffer) {
+        gameBulkRepository.upsertGames(dbPlatform, buffer.stream()
+                .map(this::toDbGame)
+                .toList());
+    }
+
+    private Game toDbGame(proto.Game apiGame) {
+        return Game.builder()
+                .id(apiGame.getId())
+                .name(apiGame.getName())
+                .infoLink(apiGame.getUrl()).build();
+    }
+
+    private void saveWatermark(Platform dbPlatform, long gamesUpdatedAt) {
+        platformSyncRepository.save(PlatformSync.builder()
+                .platformId(dbPlatform.getId())
+                .gamesUpdatedAt(gamesUpdatedAt).build());
+    }
+
+    /**
+     * Game counts of the platforms are read from the stats maintained by games updates, no relations are loaded
+     */
+    @Transactional(readOnly = true)
     public PlatformStats getStats() {
+        List<PlatformStats.Platform> platformStats = platformStatsRepository.findActive();
         return PlatformStats.builder()
-                .activePlatformCount(platformRepository.countByActiveTrue())
+                .activePlatformCount(platformStats.size())
                 .gameCount(gameRepository.count())
                 .gamePlatformCount(gamePlatformRepository.count())
-                .platformStats(platformRepository.findByActiveTrue().stream()
-                        .map(p -> new PlatformStats.Platform(
-                                p.getName(),
-                                p.getGamePlatforms().size()))
-                        .collect(Collectors.toList()))
+                .platformStats(platformStats)
                 .build();
     }
 
-    @Deprecated
-    private <T> void eraseTable(JpaRepository<T, ?> repository) {
-        //TODO replace with truncate (but some issue with H2).
-//        gamePlatformRepository.truncateTable();
-//        .truncateTable();
+    /**
+     * State of the full games update shared by grabbing steps
+     *
+     * @param gameCounts IGDB game count by platform id
+     * @param meter      progress of all platforms
+     * @param startTimes grabbing start time by platform id
+     * @param durations  grabbing duration of the completed platforms by platform id
+     */
+    private record GrabContext(
+            Map<Long, IngestionCheckpoint> checkpoints,
+            Map<Long, Long> gameCounts,
+            ProgressMeter meter,
+            Map<Long, Instant> startTimes,
+            Map<Long, Duration> durations,
+            Consumer<String> progressCallback
+    ) {
+    }
+
+    /**
+     * IGDB games page of the platform. Page without games marks the end of the platform grabbing
+     */
+    private record PlatformPage(
+            Platform platform,
+            List<proto.Game> games,
+            RuntimeException error
+    ) {
 
-        repository.findAll()
-                .forEach(repository::delete);
+        boolean isLast() {
+            return games == null;
+        }
     }
 }
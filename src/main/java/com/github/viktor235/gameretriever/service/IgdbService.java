@@ -1,22 +1,51 @@
 package com.github.viktor235.gameretriever.service;
 
 import com.api.igdb.apicalypse.APICalypse;
+import com.api.igdb.apicalypse.Sort;
 import com.api.igdb.exceptions.RequestException;
 import com.api.igdb.request.IGDBWrapper;
 import com.api.igdb.request.ProtoRequestKt;
+import com.api.igdb.utils.Endpoint;
 import com.github.viktor235.gameretriever.exception.AppException;
 import com.github.viktor235.gameretriever.exception.AuthException;
+import com.github.viktor235.gameretriever.helper.CircuitBreaker;
+import com.github.viktor235.gameretriever.helper.RateLimiter;
+import com.github.viktor235.gameretriever.helper.ResponseCache;
+import com.github.viktor235.gameretriever.service.helper.MultiQueryBatcher;
+import com.google.protobuf.ByteString;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import proto.Count;
 import proto.Game;
+import proto.GameResult;
+import proto.MultiQueryResult;
+import proto.MultiQueryResultArray;
 import proto.Platform;
+import proto.PlatformResult;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
-
-import static com.api.igdb.request.ProtoRequestKt.games;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -28,6 +57,104 @@ public class IgdbService {
      * 500 is max limit value (see <a href="https://api-docs.igdb.com/#pagination">IGDB API Docs</a>)
      */
     private final static int BUFFER_SIZE = 500;
+    private final static String GAME_FIELDS = "name, url, updated_at";
+    /**
+     * Max count of queries in one multiquery request (see <a href="https://api-docs.igdb.com/#multi-query">IGDB API Docs</a>)
+     */
+    private final static int MULTIQUERY_SIZE = 10;
+    private final static Endpoint MULTIQUERY = () -> "/multiquery";
+
+    private final static Resource<Game> GAMES = new Resource<>("games",
+            bytes -> GameResult.parseFrom(bytes).getGamesList(), Game::parseFrom, Game::getId);
+    private final static Resource<Platform> PLATFORMS = new Resource<>("platforms",
+            bytes -> PlatformResult.parseFrom(bytes).getPlatformsList(), Platform::parseFrom, Platform::getId);
+
+    /**
+     * Defaults are IGDB limits (see <a href="https://api-docs.igdb.com/#rate-limits">IGDB API Docs</a>)
+     */
+    @Value(value = "${app.igdb.requests-per-second:4}")
+    private double requestsPerSecond;
+    @Value(value = "${app.igdb.max-open-requests:8}")
+    private int maxOpenRequests;
+    @Value(value = "${app.igdb.pagination:CURSOR}")
+    private Pagination pagination;
+    /**
+     * Count of pages requested in advance while the current page is being handled. <code>0</code> disables prefetching
+     */
+    @Value(value = "${app.igdb.prefetch-pages:2}")
+    private int prefetchPages;
+    /**
+     * Pack concurrent page requests into multiquery requests
+     */
+    @Value(value = "${app.igdb.multiquery.enabled:true}")
+    private boolean multiQueryEnabled;
+    @Value(value = "${app.igdb.multiquery.max-in-flight:2}")
+    private int multiQueryMaxInFlight;
+    /**
+     * Keep IGDB responses on disk and replay them instead of repeated requests
+     */
+    @Value(value = "${app.igdb.cache.enabled:false}")
+    private boolean cacheEnabled;
+    @Value(value = "${app.igdb.cache.dir:cache/igdb}")
+    private String cacheDir;
+    @Value(value = "${app.igdb.cache.ttl:24h}")
+    private Duration cacheTtl;
+    @Value(value = "${app.igdb.cache.max-size-mb:512}")
+    private long cacheMaxSizeMb;
+    /**
+     * Attempts of a request including the first one
+     */
+    @Value(value = "${app.igdb.retry.max-attempts:5}")
+    private int retryMaxAttempts;
+    @Value(value = "${app.igdb.retry.initial-backoff:500ms}")
+    private Duration retryInitialBackoff;
+    @Value(value = "${app.igdb.retry.max-backoff:30s}")
+    private Duration retryMaxBackoff;
+    /**
+     * Consecutive failed requests to consider IGDB down
+     */
+    @Value(value = "${app.igdb.circuit-breaker.failure-threshold:10}")
+    private int circuitBreakerFailureThreshold;
+    @Value(value = "${app.igdb.circuit-breaker.open-duration:60s}")
+    private Duration circuitBreakerOpenDuration;
+
+    /**
+     * Every IGDB request goes through this limiter
+     */
+    private RateLimiter rateLimiter;
+    private CircuitBreaker circuitBreaker;
+    private MultiQueryBatcher<MultiQueryResult> multiQueryBatcher;
+    private ResponseCache responseCache;
+
+    @PostConstruct
+    private void init() throws AppException {
+        rateLimiter = new RateLimiter(requestsPerSecond, maxOpenRequests);
+        circuitBreaker = new CircuitBreaker(circuitBreakerFailureThreshold, circuitBreakerOpenDuration);
+        if (cacheEnabled) {
+            responseCache = new ResponseCache(Path.of(cacheDir), cacheTtl, cacheMaxSizeMb * 1024 * 1024);
+        }
+        if (multiQueryEnabled) {
+            multiQueryBatcher = new MultiQueryBatcher<>(MULTIQUERY_SIZE, multiQueryMaxInFlight, this::multiQuery);
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (multiQueryBatcher != null) {
+            multiQueryBatcher.shutdown();
+        }
+    }
+
+    /**
+     * @return how many requests waited for a permit and how long. Useful to see IGDB throttling
+     */
+    public RateLimiter.Stats getThrottlingStats() {
+        return rateLimiter.getStats();
+    }
+
+    public void resetThrottlingStats() {
+        rateLimiter.resetStats();
+    }
 
     public void setCredentials(String clientId, String token) {
         api.setCredentials(clientId, token);
@@ -35,13 +162,15 @@ public class IgdbService {
 
     public boolean isAuth() throws AppException {
         try {
-            games(api, new APICalypse().where("id=" + 5601));
+            APICalypse query = new APICalypse().where("id=" + 5601);
+            request(api -> ProtoRequestKt.games(api, query));
             return true;
-        } catch (RequestException e) {
-            if (HttpStatus.UNAUTHORIZED.value() == e.getStatusCode()) {
+        } catch (AuthException e) {
+            if (e.getCause() instanceof RequestException cause
+                    && HttpStatus.UNAUTHORIZED.value() == cause.getStatusCode()) {
                 return false;
             } else {
-                throw prepareException(e);
+                throw e;
             }
         }
     }
@@ -49,82 +178,421 @@ public class IgdbService {
     public void getPlatforms(Consumer<List<Platform>> handleBufferFunc) throws AppException {
         APICalypse query = new APICalypse()
                 .fields("name,abbreviation");
-        requestAndIterate(ProtoRequestKt::platforms, query, handleBufferFunc);
+        requestAndIterate(PLATFORMS, query, null, 0, handleBufferFunc);
     }
 
     public void getGames(long platformId, Consumer<List<Game>> handleBufferFunc) throws AppException {
+        getGames(platformId, 0, handleBufferFunc);
+    }
+
+    /**
+     * Requests platform games ordered by id
+     *
+     * @param afterId games with id less or equal to this are skipped. Use it to continue an interrupted scan
+     * @return id of the last handled game. It equals <code>afterId</code> when nothing found
+     */
+    public long getGames(long platformId, long afterId, Consumer<List<Game>> handleBufferFunc) throws AppException {
         APICalypse query = new APICalypse()
-                .where("platforms=[%d]".formatted(platformId))
-                .fields("name, url");
-        requestAndIterate(ProtoRequestKt::games, query, handleBufferFunc);
+                .fields(GAME_FIELDS);
+        return requestAndIterate(GAMES, query, "platforms=[%d]".formatted(platformId), afterId, handleBufferFunc);
     }
 
-    @Deprecated
-    public int getGameCount(long platformId) throws AppException {
-        // IGDB-API-JVM has no '/games/count' endpoint, so I used ineffective hack
-        APICalypse query = new APICalypse().where("platforms=[%d]".formatted(platformId));
-        AtomicInteger count = new AtomicInteger();
-        requestAndIterate(ProtoRequestKt::externalGames, query,
-                (buffer) -> count.addAndGet(buffer.size())
-        );
-        return count.get();
+    /**
+     * Requests platform games changed since the watermark
+     *
+     * @param updatedSince IGDB <code>updated_at</code> watermark (unix time in seconds). Games updated at this second
+     *                     are requested again, because other games could be updated at the same second later
+     */
+    public void getGamesUpdatedSince(long platformId, long updatedSince, Consumer<List<Game>> handleBufferFunc) throws AppException {
+        APICalypse query = new APICalypse()
+                .fields(GAME_FIELDS);
+        requestAndIterate(GAMES, query, "platforms=[%d] & updated_at >= %d".formatted(platformId, updatedSince),
+                0, handleBufferFunc);
+    }
+
+    /**
+     * Counts games of several platforms. Count queries are packed into multiquery requests if multiquery is enabled
+     *
+     * @return game count by platform id
+     */
+    public Map<Long, Long> getGameCounts(Collection<Long> platformIds) throws AppException {
+        Map<Long, CompletableFuture<Long>> counts = new LinkedHashMap<>();
+        for (Long platformId : platformIds) {
+            counts.put(platformId, requestCount(GAMES, "platforms=[%d]".formatted(platformId)));
+        }
+        Map<Long, Long> result = new LinkedHashMap<>();
+        counts.forEach((platformId, count) -> result.put(platformId, await(count)));
+        return result;
+    }
+
+    /**
+     * Requests <code>/{resource}/count</code> endpoint
+     */
+    private CompletableFuture<Long> requestCount(Resource<?> resource, String where) throws AppException {
+        String queryText = new APICalypse().where(where).buildQuery();
+        if (multiQueryBatcher == null) {
+            byte[] bytes = cachedRequest(resource.countEndpoint(), resource.name() + "/count", queryText);
+            return CompletableFuture.completedFuture(parse(Count::parseFrom, bytes).getCount());
+        }
+        return cachedMultiQuery(resource.name() + "/count", queryText)
+                .thenApply(MultiQueryResult::getCount);
     }
 
     /**
-     * Requests data from IGDB API. Uses buffer to handle huge requests
+     * Requests data from IGDB API. Uses buffer to handle huge requests. Data is sorted by id, so pages are
+     * requested either by id cursor (<code>where id > lastId</code>) or by offset, depending on {@link Pagination}
      *
-     * @param request          API function specified in {@link ProtoRequestKt}
-     * @param query            APICalypse API query. This method adds <code>step</code> and <code>limit</code> to the query
-     * @param handleBufferFunc function to handle result data buffer. This function calls many times if a lot of data requested
+     * @param resource         requested IGDB resource
+     * @param query            APICalypse API query. This method adds <code>where</code>, <code>sort</code>,
+     *                         <code>limit</code> and <code>offset</code> to the query
+     * @param where            optional filter condition, without id restriction
+     * @param afterId          id to start after. <code>0</code> means from the beginning
+     * @param handleBufferFunc function to handle result data buffer. This function calls many times if a lot of data requested.
+     *                         It always runs on the calling thread
      * @param <T>              type of result data
+     * @return id of the last handled item
      * @throws AppException when error while data requesting
      */
-    private <T> void requestAndIterate(
-            ThrowingBiFunction<IGDBWrapper, APICalypse, List<T>> request,
+    private <T> long requestAndIterate(
+            Resource<T> resource,
+            APICalypse query,
+            String where,
+            long afterId,
+            Consumer<List<T>> handleBufferFunc
+    ) throws AppException {
+        if (prefetchPages <= 0) {
+            return iteratePages(resource, query, where, afterId, handleBufferFunc);
+        }
+
+        // Pages are requested by a separate thread, so the next page is downloading while the current one is handled.
+        // The queue is bounded, so a slow handler pauses requesting. Empty page marks the end
+        BlockingQueue<List<T>> pages = new ArrayBlockingQueue<>(prefetchPages);
+        AtomicLong lastId = new AtomicLong(afterId);
+        AtomicReference<RuntimeException> error = new AtomicReference<>();
+        Thread fetcher = new Thread(() -> {
+            try {
+                lastId.set(iteratePages(resource, query, where, afterId, (buffer) -> {
+                    try {
+                        pages.put(buffer);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new AppException("IGDB requesting interrupted", e);
+                    }
+                }));
+            } catch (RuntimeException e) {
+                error.set(e);
+            } finally {
+                try {
+                    pages.put(List.of());
+                } catch (InterruptedException ignored) {
+                    // Nobody waits for pages anymore
+                }
+            }
+        }, "igdb-prefetch");
+        fetcher.setDaemon(true);
+        fetcher.start();
+
+        try {
+            List<T> buffer;
+            while (!(buffer = pages.take()).isEmpty()) {
+                handleBufferFunc.accept(buffer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException("IGDB requesting interrupted", e);
+        } finally {
+            fetcher.interrupt();
+        }
+
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return lastId.get();
+    }
+
+    private <T> long iteratePages(
+            Resource<T> resource,
             APICalypse query,
+            String where,
+            long afterId,
             Consumer<List<T>> handleBufferFunc
     ) throws AppException {
         int offset = 0;
         int step = BUFFER_SIZE;
-        query.limit(step);
+        long lastId = afterId;
+        query.sort("id", Sort.ASCENDING)
+                .limit(step);
+        if (pagination == Pagination.OFFSET && (where != null || afterId > 0)) {
+            query.where(idCondition(where, afterId));
+        }
         boolean running = true;
         do {
-            List<T> buffer;
+            // Canceled job interrupts the thread. Stop before the next page
+            if (Thread.currentThread().isInterrupted()) {
+                throw new AppException("IGDB requesting interrupted");
+            }
+            if (pagination == Pagination.CURSOR) {
+                query.where(idCondition(where, lastId));
+            } else {
+                query.offset(offset);
+            }
+            List<T> buffer = requestPage(resource, query);
+
+            if (!buffer.isEmpty()) {
+                handleBufferFunc.accept(buffer);
+                lastId = resource.idFunc().applyAsLong(buffer.get(buffer.size() - 1));
+                offset += step;
+            }
+            // Not full page is the last one
+            running = buffer.size() == step;
+        } while (running);
+        return lastId;
+    }
+
+    private String idCondition(String where, long afterId) {
+        if (afterId <= 0 && where != null) {
+            return where;
+        }
+        String idCondition = "id > " + afterId;
+        return where == null ? idCondition : "(%s) & %s".formatted(where, idCondition);
+    }
+
+    /**
+     * Requests a page of the resource. Goes through {@link MultiQueryBatcher} if multiquery is enabled
+     */
+    private <T> List<T> requestPage(Resource<T> resource, APICalypse query) throws AppException {
+        String queryText = query.buildQuery();
+        if (multiQueryBatcher == null) {
+            byte[] bytes = cachedRequest(resource.endpoint(), resource.name(), queryText);
+            return parse(resource.pageParser(), bytes);
+        }
+
+        MultiQueryResult result = await(cachedMultiQuery(resource.name(), queryText));
+        return result.getResultsList().stream()
+                .map(bytes -> parse(resource.itemParser(), bytes))
+                .toList();
+    }
+
+    /**
+     * Requests the endpoint or replays the cached response if {@link ResponseCache} is enabled
+     */
+    private byte[] cachedRequest(Endpoint endpoint, String endpointName, String queryText) throws AppException {
+        String key = cacheKey("proto", endpointName, queryText);
+        byte[] bytes = responseCache == null ? null : responseCache.get(key);
+        if (bytes == null) {
+            bytes = request(api -> api.apiProtoRequest(endpoint, queryText));
+            if (responseCache != null) {
+                responseCache.put(key, bytes);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Submits the query to {@link MultiQueryBatcher} or replays the cached result if {@link ResponseCache} is enabled.
+     * Results are cached per query, so a replay doesn't depend on how queries were packed
+     */
+    private CompletableFuture<MultiQueryResult> cachedMultiQuery(String endpointName, String queryText) throws AppException {
+        if (responseCache == null) {
+            return multiQueryBatcher.submit(endpointName, queryText);
+        }
+        String key = cacheKey("multiquery", endpointName, queryText);
+        byte[] bytes = responseCache.get(key);
+        if (bytes != null) {
+            return CompletableFuture.completedFuture(parse(MultiQueryResult::parseFrom, bytes));
+        }
+        return multiQueryBatcher.submit(endpointName, queryText)
+                .thenApply(result -> {
+                    responseCache.put(key, result.toByteArray());
+                    return result;
+                });
+    }
+
+    /**
+     * Query text already contains the cursor (<code>where id > lastId</code>) or the offset
+     *
+     * @param format response format. Multiquery returns items in another message than the endpoint itself
+     */
+    private static String cacheKey(String format, String endpointName, String queryText) {
+        String normalizedQuery = queryText.trim().replaceAll("\\s+", " ");
+        return "%s:%s:%s".formatted(format, endpointName, normalizedQuery);
+    }
+
+    /**
+     * Runs several queries by one request
+     *
+     * @return results in the same order as queries
+     * @throws AppException if the response has no result of a query. An empty result would end the query paging
+     */
+    private List<MultiQueryResult> multiQuery(List<MultiQueryBatcher.Query> queries) throws AppException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < queries.size(); i++) {
+            MultiQueryBatcher.Query query = queries.get(i);
+            // Query index is used as a name to match results
+            body.append("query %s \"%d\" {%s};\n".formatted(query.endpoint(), i, query.query()));
+        }
+        byte[] bytes = request(api -> api.apiProtoRequest(MULTIQUERY, body.toString()));
+        Map<String, MultiQueryResult> results = parse(MultiQueryResultArray::parseFrom, bytes).getResultList().stream()
+                .collect(Collectors.toMap(MultiQueryResult::getName, Function.identity()));
+        List<MultiQueryResult> orderedResults = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            MultiQueryResult result = results.get(String.valueOf(i));
+            if (result == null) {
+                throw new AppException("No result #%d of IGDB multiquery request (%s)"
+                        .formatted(i, queries.get(i).endpoint()));
+            }
+            orderedResults.add(result);
+        }
+        return orderedResults;
+    }
+
+    private <T> T await(CompletableFuture<T> future) throws AppException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException("IGDB requesting interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AppException cause) {
+                throw cause;
+            }
+            throw new AppException("Unexpected error while requesting IGDB API: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private <S, T> T parse(ThrowingFunction<S, T> parser, S source) throws AppException {
+        try {
+            return parser.apply(source);
+        } catch (RuntimeException e) {
+            throw new AppException("Error while parsing IGDB API response: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Single IGDB API request. Waits for a {@link RateLimiter} permit before the request.
+     * Transient errors (429, 5xx, network errors) are retried with jittered exponential backoff.
+     * When IGDB keeps failing, {@link CircuitBreaker} rejects requests at once
+     */
+    private <R> R request(ThrowingFunction<IGDBWrapper, R> request) throws AppException {
+        int attempt = 0;
+        while (true) {
+            if (!circuitBreaker.isCallAllowed()) {
+                throw new AppException("IGDB API is unavailable. Try again later, "
+                        + "interrupted games update can be continued with 'games update --resume'");
+            }
+            RequestException cause;
             try {
-                buffer = request.apply(api, query.offset(offset));
+                R result = rateLimiter.call(() -> request.apply(api));
+                circuitBreaker.onSuccess();
+                return result;
+            } catch (AppException e) {
+                throw e;
             } catch (RuntimeException e) {
-                if (e.getCause() instanceof RequestException cause) {
-                    throw prepareException(cause);
+                if (e.getCause() instanceof RequestException requestException) {
+                    cause = requestException;
                 } else {
                     throw new AppException("Unexpected error while requesting IGDB API: " + e.getMessage(), e);
                 }
             }
 
-            if (buffer.isEmpty()) {
-                running = false;
-            } else {
-                handleBufferFunc.accept(buffer);
-                offset += step;
+            int statusCode = cause.getStatusCode();
+            if (!isTransient(statusCode)) {
+                throw prepareException(cause);
             }
-        } while (running);
+            // Too many requests means IGDB is alive, so it doesn't count as a failure
+            if (statusCode != HttpStatus.TOO_MANY_REQUESTS.value()) {
+                circuitBreaker.onFailure();
+            }
+            if (++attempt >= retryMaxAttempts) {
+                throw prepareException(cause);
+            }
+            sleep(backoff(attempt, statusCode));
+        }
+    }
+
+    /**
+     * @param statusCode HTTP status code. It is not positive when there is no response at all
+     */
+    private boolean isTransient(int statusCode) {
+        return statusCode <= 0
+                || statusCode == HttpStatus.TOO_MANY_REQUESTS.value()
+                || statusCode >= HttpStatus.INTERNAL_SERVER_ERROR.value();
     }
 
-    private AuthException prepareException(RequestException e) {
+    /**
+     * Random delay up to the exponentially growing limit ("full jitter"), so concurrent requests don't retry
+     * at the same moment. IGDB rate limit window is one second, so 429 waits at least for the next window
+     */
+    private Duration backoff(int attempt, int statusCode) {
+        long limit = Math.min(retryMaxBackoff.toMillis(), retryInitialBackoff.toMillis() << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(limit + 1);
+        if (statusCode == HttpStatus.TOO_MANY_REQUESTS.value()) {
+            delay = Math.max(delay, TimeUnit.SECONDS.toMillis(1));
+        }
+        return Duration.ofMillis(delay);
+    }
+
+    private void sleep(Duration duration) throws AppException {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException("IGDB requesting interrupted", e);
+        }
+    }
+
+    private AppException prepareException(RequestException e) {
         int statusCode = e.getStatusCode();
-        String err = switch (statusCode) {
-            case 401 -> "Unauthorized. Use 'auth' command to authorize to the IGDB";
-            default -> "Error while IGDB API request. HTTP code: " + statusCode;
+        return switch (statusCode) {
+            case 401 -> new AuthException("Unauthorized. Use 'auth' command to authorize to the IGDB", e);
+            case 403 -> new AuthException("Forbidden. Use 'auth' command to authorize to the IGDB", e);
+            default -> new AppException("Error while IGDB API request. HTTP code: " + statusCode, e);
         };
-        return new AuthException(err, e);
     }
 
-    interface ThrowingBiFunction<T1, T2, R> {
+    public enum Pagination {
+        /**
+         * Keyset pagination: every page is requested with <code>where id > lastId</code>. Every page costs the same
+         */
+        CURSOR,
+        /**
+         * Classic <code>offset</code> pagination. Deep pages are slower and IGDB limits the offset
+         */
+        OFFSET
+    }
+
+    /**
+     * IGDB API resource
+     *
+     * @param name        endpoint name
+     * @param pageParser  parser of the endpoint response
+     * @param itemParser  parser of a single item. Multiquery returns items separately
+     * @param idFunc      function to get id of the item
+     * @param <T>         type of the resource item
+     */
+    private record Resource<T>(
+            String name,
+            ThrowingFunction<byte[], List<T>> pageParser,
+            ThrowingFunction<ByteString, T> itemParser,
+            ToLongFunction<T> idFunc
+    ) {
+
+        Endpoint endpoint() {
+            return () -> "/" + name;
+        }
+
+        Endpoint countEndpoint() {
+            return () -> "/" + name + "/count";
+        }
+    }
+
+    interface ThrowingFunction<T, R> {
 
-        R applyWithException(T1 t1, T2 t2) throws Exception;
+        R applyWithException(T t) throws Exception;
 
-        default R apply(T1 t1, T2 t2) {
+        default R apply(T t) {
             try {
-                return applyWithException(t1, t2);
+                return applyWithException(t);
             } catch (RuntimeException ex) {
                 throw ex;
             } catch (Exception e) {
@@ -0,0 +1,127 @@
+package com.github.viktor235.gameretriever.service;
+
+import com.github.viktor235.gameretriever.exception.AppException;
+import com.github.viktor235.gameretriever.model.Job;
+import com.github.viktor235.gameretriever.model.JobResources;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs long commands in background, so the shell stays usable. Jobs using different data run concurrently.
+ * Cancellation interrupts the job thread: IGDB requesting stops before the next page (saved pages are kept), exports
+ * and conversions stop before the next row or line
+ */
+@Slf4j
+@Service
+public class JobService {
+
+    @Value(value = "${app.jobs.parallelism:2}")
+    private int parallelism;
+
+    private final AtomicInteger idSequence = new AtomicInteger();
+    /**
+     * Guarded by <code>this</code>
+     */
+    private final Map<Integer, Job> jobs = new LinkedHashMap<>();
+    private ExecutorService executor;
+
+    @PostConstruct
+    private void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "job-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    private void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param name      job description
+     * @param resources data used by the job. Jobs using the same data don't run together
+     * @param action    job body. Gets progress callback
+     * @throws AppException when there is an active job using the same data
+     */
+    public synchronized Job submit(String name, JobResources resources, Consumer<Consumer<String>> action)
+            throws AppException {
+        checkAvailable(resources);
+
+        Job job = new Job(idSequence.incrementAndGet(), name, resources);
+        jobs.put(job.getId(), job);
+        job.setFuture(executor.submit(() -> run(job, action)));
+        return job;
+    }
+
+    /**
+     * Checks that a command can use the data now. Foreground commands call it before the work
+     *
+     * @throws AppException when there is an active job using the same data
+     */
+    public synchronized void checkAvailable(JobResources resources) throws AppException {
+        jobs.values().stream()
+                .filter(j -> !j.isFinished() && j.getResources().conflictsWith(resources))
+                .findFirst()
+                .ifPresent(j -> {
+                    throw new AppException("Job #%d '%s' uses the same data. Wait for it or cancel it"
+                            .formatted(j.getId(), j.getName()));
+                });
+    }
+
+    private void run(Job job, Consumer<Consumer<String>> action) {
+        if (!job.start()) {
+            return;
+        }
+        try {
+            action.accept(job::setMessage);
+            job.finish(Job.Status.SUCCEEDED, "Done");
+        } catch (RuntimeException e) {
+            if (job.getStatus() == Job.Status.CANCELING) {
+                job.finish(Job.Status.CANCELED, "Canceled: " + e.getMessage());
+            } else {
+                log.error("Job #{} '{}' failed", job.getId(), job.getName(), e);
+                job.finish(Job.Status.FAILED, e.getMessage());
+            }
+        } finally {
+            // Clear the interruption, so it doesn't leak to the next job on this thread
+            Thread.interrupted();
+        }
+    }
+
+    public synchronized List<Job> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    public synchronized Job getJob(int id) throws AppException {
+        Job job = jobs.get(id);
+        if (job == null) {
+            throw new AppException("Job #%d not found".formatted(id));
+        }
+        return job;
+    }
+
+    public Job cancel(int id) throws AppException {
+        Job job = getJob(id);
+        if (job.isFinished()) {
+            throw new AppException("Job #%d is already finished".formatted(id));
+        }
+        job.markCanceling();
+        job.getFuture().cancel(true);
+        return job;
+    }
+}
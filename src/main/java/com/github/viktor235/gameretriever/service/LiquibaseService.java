@@ -1,100 +1,372 @@
 package com.github.viktor235.gameretriever.service;
 
 import com.github.viktor235.gameretriever.exception.AppException;
-import liquibase.CatalogAndSchema;
-import liquibase.Liquibase;
-import liquibase.database.Database;
-import liquibase.database.DatabaseFactory;
-import liquibase.database.jvm.JdbcConnection;
-import liquibase.diff.compare.CompareControl;
-import liquibase.diff.output.DiffOutputControl;
-import liquibase.diff.output.changelog.DiffToChangeLog;
-import liquibase.exception.DatabaseException;
-import liquibase.resource.ClassLoaderResourceAccessor;
-import liquibase.serializer.core.formattedsql.FormattedSqlChangeLogSerializer;
-import liquibase.structure.DatabaseObject;
-import liquibase.structure.core.Data;
+import com.github.viktor235.gameretriever.helper.OutputFiles;
+import com.github.viktor235.gameretriever.helper.SnapshotReader;
+import com.github.viktor235.gameretriever.helper.SnapshotWriter;
+import com.github.viktor235.gameretriever.helper.SqlLiterals;
+import com.github.viktor235.gameretriever.model.ExportFormat;
+import com.github.viktor235.gameretriever.model.JobResources;
+import com.github.viktor235.gameretriever.repository.ExportRepository;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.File;
+import java.io.FilterWriter;
 import java.io.IOException;
-import java.io.PrintStream;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
-import java.util.Properties;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
+/**
+ * Writes DB data as Liquibase formatted SQL changelog. Tables are streamed row by row from a forward-only cursor
+ * straight into the file, so memory use doesn't depend on the catalog size
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class LiquibaseService {
 
-    @Value(value = "${spring.datasource.url}")
-    private String dbUrl;
-    @Value(value = "${spring.jpa.properties.hibernate.default_schema:#{null}}")
-    private String dbSchema;
-    @Value(value = "${spring.datasource.username:#{null}}")
-    private String dbUser;
-    @Value(value = "${spring.datasource.password:#{null}}")
-    private String dbPassword;
+    private static final int PROGRESS_STEP = 100_000;
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    private final ExportRepository exportRepository;
+    private final ExportService exportService;
+
     @Value(value = "${app.changelog.file}")
     @Getter
     private String changelogFile;
+    @Value(value = "${app.changelog.bulk:false}")
+    private boolean bulk;
+    @Value(value = "${app.changelog.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Writes one changeset per table. The file is replaced.
+     * <p>
+     * By default every row is a single-row insert statement. Bulk output shape depends on the target DB dialect
+     * taken from the file name (<code>changelog.h2.sql</code>):
+     * <ul>
+     *     <li><code>h2</code> - <code>CSVREAD</code> of CSV files written to <code>changelog.h2-data/</code></li>
+     *     <li>others - multi-row inserts of <code>batch-size</code> rows</li>
+     * </ul>
+     * Every export saves a snapshot of the exported rows next to the changelog
+     *
+     * @param incremental write only rows inserted, updated or deleted since the previous export. Without the previous
+     *                    snapshot all rows are inserted. Bulk output is not used
+     */
+    public void generateDataChangelog(boolean incremental, Consumer<String> progressCallback) throws AppException {
+        Path file = Path.of(changelogFile);
+        Path snapshotFile = Path.of(changelogFile + SNAPSHOT_EXTENSION);
+        Path newSnapshotFile = Path.of(changelogFile + SNAPSHOT_EXTENSION + ".tmp");
+        String dialect = getDialect();
+        String author = System.getProperty("user.name") + " (generated)";
+        long changeSetId = System.currentTimeMillis();
+
+        List<Path> deleteFiles = new ArrayList<>();
+        try (ChangeSetWriter output = new ChangeSetWriter(OutputFiles.newWriter(file, Charset.defaultCharset()),
+                "%s:%d".formatted(author, changeSetId));
+             SnapshotReader snapshot = incremental ? new SnapshotReader(snapshotFile) : null;
+             SnapshotWriter newSnapshot = new SnapshotWriter(newSnapshotFile)) {
+            output.write("-- liquibase formatted sql\n");
+            for (String table : ExportRepository.TABLES) {
+                output.startChangeSet();
+                newSnapshot.startTable(table, exportRepository.getKeySize(table));
+                Consumer<Object[]> rowListener = newSnapshot::add;
+                if (incremental) {
+                    Path deleteFile = Files.createTempFile(file.toAbsolutePath().getParent(), "delete", ".tmp");
+                    deleteFiles.add(0, deleteFile);
+                    writeChanges(table, snapshot, newSnapshot, output, deleteFile, progressCallback);
+                } else if (!bulk) {
+                    writeInserts(table, 1, output, rowListener, progressCallback);
+                } else if (dialect.equals("h2")) {
+                    writeCsvRead(table, file, output, rowListener, progressCallback);
+                } else {
+                    writeInserts(table, Math.max(batchSize, 1), output, rowListener, progressCallback);
+                }
+            }
+
+            // Rows are deleted after inserts, referencing tables first
+            for (Path deleteFile : deleteFiles) {
+                if (Files.size(deleteFile) > 0) {
+                    output.startChangeSet();
+                    try (Reader deletes = Files.newBufferedReader(deleteFile, Charset.defaultCharset())) {
+                        deletes.transferTo(output);
+                    }
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            deleteQuietly(newSnapshotFile);
+            throw new AppException("Error while generating DB changelog", e);
+        } finally {
+            deleteFiles.forEach(LiquibaseService::deleteQuietly);
+        }
 
-    public void generateDataChangelog() {
-        generateChangelog(
-                getDefaultDb(),
-                changelogFile,
-                Data.class
-        );
+        try {
+            Files.move(newSnapshotFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new AppException("Error while saving export snapshot '%s'".formatted(snapshotFile), e);
+        }
     }
 
-    public Database getDefaultDb() {
-        return getDb(dbUrl, dbSchema, dbUser, dbPassword);
+    /**
+     * @return data used by the changelog generation: exported tables, the changelog and its snapshot
+     */
+    public JobResources getResources() {
+        return JobResources.NONE
+                .read(ExportRepository.TABLES.stream().map(JobResources::table).toList())
+                .write(JobResources.file(changelogFile), JobResources.file(changelogFile + SNAPSHOT_EXTENSION));
     }
 
-    public Database getDb(String url, String schema, String user, String password) {
-        Properties connectionProps = new Properties();
-        if (user != null)
-            connectionProps.put("user", dbUser);
-        if (password != null)
-            connectionProps.put("password", dbPassword);
+    /**
+     * @return dialect part of the changelog file name in lower case: <code>changelog.h2.sql</code> -> <code>h2</code>.
+     * Empty if there is no one
+     */
+    public String getDialect() {
+        String fileName = Path.of(changelogFile).getFileName().toString().toLowerCase();
+        String[] parts = fileName.split("\\.");
+        return parts.length >= 3 ? parts[parts.length - 2] : "";
+    }
 
-        try {
-            Connection dbConnection = DriverManager.getConnection(url, connectionProps);
-            Database db = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(dbConnection));
-            if (schema != null)
-                db.setDefaultSchemaName(schema);
-            return db;
-        } catch (SQLException | DatabaseException e) {
-            throw new AppException("Error while connecting to the DB", e);
+    /**
+     * Insert statement per <code>batchSize</code> rows. Every row is on its own line
+     */
+    private void writeInserts(String table, int batchSize, Writer output, Consumer<Object[]> rowListener,
+                              Consumer<String> progressCallback) {
+        List<String> columns = exportRepository.getColumns(table);
+        String insertPrefix = "INSERT INTO %s (%s) VALUES ".formatted(table, String.join(", ", columns));
+        StringBuilder line = new StringBuilder();
+        long[] rowCount = {0};
+        exportRepository.forEachRowValues(table, null, values -> {
+            long rowInBatch = rowCount[0]++ % batchSize;
+            line.setLength(0);
+            if (rowInBatch == 0) {
+                line.append(insertPrefix);
+            } else {
+                line.append(",\n    ");
+            }
+            line.append('(');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(", ");
+                }
+                SqlLiterals.append(line, values[i]);
+            }
+            line.append(')');
+            if (rowInBatch == batchSize - 1) {
+                line.append(";\n");
+            }
+            write(output, line);
+            rowListener.accept(values);
+            reportProgress(table, rowCount[0], progressCallback);
+        });
+        if (rowCount[0] % batchSize != 0) {
+            write(output, ";\n");
         }
     }
 
-    @SafeVarargs
-    public final void generateChangelog(Database database, String outputFileName, Class<? extends DatabaseObject>... diffTypes) {
-        Liquibase liquibase = new Liquibase(outputFileName, new ClassLoaderResourceAccessor(), database);
+    /**
+     * The table goes to a CSV file next to the changelog, the changelog loads it by a single statement. The CSV path
+     * is absolute: H2 resolves relative paths against its working folder, not the changelog location. H2 reads an
+     * empty field as <code>NULL</code> and keeps quoted fields as is, so the CSV quotes empty strings and values with
+     * leading or trailing whitespace
+     */
+    private void writeCsvRead(String table, Path changelog, Writer output, Consumer<Object[]> rowListener,
+                              Consumer<String> progressCallback) {
+        String changelogName = changelog.getFileName().toString();
+        Path dataDir = changelog.resolveSibling(changelogName.substring(0, changelogName.lastIndexOf('.')) + "-data");
+        Path csvFile = dataDir.resolve(table.toLowerCase() + "." + ExportFormat.CSV.getExtension());
+        long[] rowCount = {0};
+        exportService.exportTable(table, ExportFormat.CSV, csvFile, values -> {
+            rowListener.accept(values);
+            rowCount[0]++;
+        }, progressCallback);
+        if (rowCount[0] == 0) {
+            return;
+        }
 
-        CatalogAndSchema catalogAndSchema = CatalogAndSchema.DEFAULT.standardize(database);
+        List<String> columns = exportRepository.getColumns(table);
+        String csvPath = csvFile.toAbsolutePath().normalize().toString().replace('\\', '/');
+        write(output, "INSERT INTO %s (%s) SELECT * FROM CSVREAD(%s, NULL, 'charset=UTF-8');\n".formatted(
+                table, String.join(", ", columns), SqlLiterals.of(csvPath)));
+    }
 
-        CompareControl compareControl = new CompareControl();
-        DiffToChangeLog changeLogWriter = new DiffToChangeLog(new DiffOutputControl(false, false, false,
-                compareControl.getSchemaComparisons())
-        );
-        changeLogWriter.setChangeSetPath(outputFileName);
+    /**
+     * Compares the rows with the previous snapshot. Both are ordered by the key, so a single pass finds inserted,
+     * updated and deleted rows. Deletes go to the separate file
+     */
+    private void writeChanges(String table, SnapshotReader snapshot, SnapshotWriter newSnapshot, Writer output,
+                              Path deleteFile, Consumer<String> progressCallback) throws IOException {
+        int keySize = exportRepository.getKeySize(table);
+        List<String> columns = exportRepository.getColumns(table);
+        snapshot.startTable(table, keySize);
 
+        try (Writer deletes = OutputFiles.newWriter(deleteFile, Charset.defaultCharset())) {
+            StringBuilder line = new StringBuilder();
+            boolean[] hasSnapshotRow = {snapshot.next()};
+            long[] rowCount = {0};
+            long[] changeCount = {0};
+            exportRepository.forEachRowValues(table, null, values -> {
+                long hash = newSnapshot.add(values);
+                try {
+                    int comparison = 0;
+                    while (hasSnapshotRow[0] && (comparison = snapshot.compareKey(values)) < 0) {
+                        writeDelete(table, columns, snapshot, deletes, line);
+                        hasSnapshotRow[0] = snapshot.next();
+                    }
+                    line.setLength(0);
+                    if (hasSnapshotRow[0] && comparison == 0) {
+                        if (snapshot.getHash() != hash) {
+                            appendUpdate(line, table, columns, keySize, values);
+                        }
+                        hasSnapshotRow[0] = snapshot.next();
+                    } else {
+                        appendInsert(line, table, columns, values);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (!line.isEmpty()) {
+                    write(output, line);
+                    changeCount[0]++;
+                }
+                if (++rowCount[0] % PROGRESS_STEP == 0) {
+                    progressCallback.accept("%s: %d rows, %d changed".formatted(table, rowCount[0], changeCount[0]));
+                }
+            });
+            while (hasSnapshotRow[0]) {
+                writeDelete(table, columns, snapshot, deletes, line);
+                hasSnapshotRow[0] = snapshot.next();
+            }
+        }
+    }
+
+    private static void appendInsert(StringBuilder line, String table, List<String> columns, Object[] values) {
+        line.append("INSERT INTO ").append(table).append(" (").append(String.join(", ", columns)).append(") VALUES (");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(", ");
+            }
+            SqlLiterals.append(line, values[i]);
+        }
+        line.append(");\n");
+    }
+
+    private static void appendUpdate(StringBuilder line, String table, List<String> columns, int keySize,
+                                     Object[] values) {
+        line.append("UPDATE ").append(table).append(" SET ");
+        for (int i = keySize; i < values.length; i++) {
+            if (i > keySize) {
+                line.append(", ");
+            }
+            line.append(columns.get(i)).append(" = ");
+            SqlLiterals.append(line, values[i]);
+        }
+        line.append(" WHERE ");
+        for (int i = 0; i < keySize; i++) {
+            if (i > 0) {
+                line.append(" AND ");
+            }
+            line.append(columns.get(i)).append(" = ");
+            SqlLiterals.append(line, values[i]);
+        }
+        line.append(";\n");
+    }
+
+    private static void writeDelete(String table, List<String> columns, SnapshotReader snapshot, Writer deletes,
+                                    StringBuilder line) throws IOException {
+        line.setLength(0);
+        line.append("DELETE FROM ").append(table).append(" WHERE ");
+        for (int i = 0; i < snapshot.getKeySize(); i++) {
+            if (i > 0) {
+                line.append(" AND ");
+            }
+            line.append(columns.get(i)).append(" = ").append(snapshot.getKey(i));
+        }
+        line.append(";\n");
+        deletes.append(line);
+    }
+
+    private static void deleteQuietly(Path file) {
         try {
-            File file = new File(outputFileName);
-            file.getParentFile().mkdir();
-            file.createNewFile(); // If file already exists will do nothing
-            PrintStream outputStream = new PrintStream(file);
-            FormattedSqlChangeLogSerializer changeLogSerializer = new FormattedSqlChangeLogSerializer();
-            liquibase.generateChangeLog(catalogAndSchema, changeLogWriter, outputStream, changeLogSerializer, diffTypes);
-        } catch (IOException | ParserConfigurationException | DatabaseException e) {
-            throw new AppException("Error while generating DB changelog", e);
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Error while deleting temp file '{}': {}", file, e.getMessage());
+        }
+    }
+
+    private static void write(Writer output, CharSequence text) {
+        try {
+            output.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void reportProgress(String table, long rowCount, Consumer<String> progressCallback) {
+        if (rowCount % PROGRESS_STEP == 0) {
+            progressCallback.accept("%s: %d rows".formatted(table, rowCount));
+        }
+    }
+
+    /**
+     * Writes the changeset header before the first statement of the changeset. Liquibase rejects changesets without
+     * SQL, so changesets of empty tables and tables without changes are skipped
+     */
+    private static class ChangeSetWriter extends FilterWriter {
+
+        /**
+         * <code>author:id</code> without the changeset number
+         */
+        private final String changeSetPrefix;
+        private int changeSetNumber;
+        private boolean headerPending;
+
+        private ChangeSetWriter(Writer output, String changeSetPrefix) {
+            super(output);
+            this.changeSetPrefix = changeSetPrefix;
+        }
+
+        void startChangeSet() {
+            headerPending = true;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            writeHeader();
+            super.write(c);
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            if (length > 0) {
+                writeHeader();
+            }
+            super.write(buffer, offset, length);
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            if (length > 0) {
+                writeHeader();
+            }
+            super.write(text, offset, length);
+        }
+
+        private void writeHeader() throws IOException {
+            if (headerPending) {
+                headerPending = false;
+                out.write("\n-- changeset %s-%d\n".formatted(changeSetPrefix, ++changeSetNumber));
+            }
         }
     }
 }
@@ -0,0 +1,95 @@
+package com.github.viktor235.gameretriever.service.helper;
+
+import com.github.mustachejava.Mustache;
+import com.github.viktor235.gameretriever.model.JobResources;
+import com.github.viktor235.gameretriever.model.converter.Handler;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Validated converter with compiled regexes and templates. Immutable, so it can be shared by running conversions
+ *
+ * @param name converter file name without extension
+ */
+public record CompiledConverter(
+        String name,
+        String inputFile,
+        String outputFile,
+        List<CompiledHandler> handlers
+) {
+
+    public CompiledConverter withOutputFile(String outputFile) {
+        return new CompiledConverter(name, inputFile, outputFile, handlers);
+    }
+
+    /**
+     * @return input file or DB if the converter has no <code>regex-generator</code> handlers
+     */
+    public String source() {
+        return inputFile != null ? inputFile : "DB";
+    }
+
+    /**
+     * @return data used by the conversion: the input file or exported tables and the output file
+     */
+    public JobResources resources() {
+        JobResources resources = JobResources.NONE.write(JobResources.file(outputFile));
+        if (inputFile != null) {
+            resources = resources.read(JobResources.file(inputFile));
+        }
+        return resources.read(handlers.stream()
+                .filter(h -> h.table() != null)
+                .map(h -> JobResources.table(h.table()))
+                .toList());
+    }
+
+    /**
+     * @param filter        optional regex filter of <code>regex-generator</code> handler. Lines which don't contain it are skipped
+     * @param filterLiteral literal text required by the filter. Empty if there is no one
+     * @param pattern       whole line regex of <code>regex-generator</code> handler
+     * @param patternPrefix literal prefix required by the pattern. Empty if there is no one
+     * @param template      template of <code>template</code> and <code>row-template</code> handlers
+     * @param skipIfEmpty   <code>template</code> handler is rendered only if the following regex handlers generate lines
+     * @param table         exported table of <code>row-template</code> handler
+     * @param where         optional SQL condition of <code>row-template</code> handler
+     */
+    public record CompiledHandler(
+            Handler.Type type,
+            String name,
+            Pattern filter,
+            String filterLiteral,
+            Pattern pattern,
+            String patternPrefix,
+            String substitution,
+            Mustache template,
+            boolean skipIfEmpty,
+            String table,
+            String where
+    ) {
+
+        /**
+         * Applies <code>regex-generator</code> handler to the input line. Lines without the required literals are
+         * rejected before the regex engine
+         *
+         * @return generated line or <code>null</code> if the line doesn't fit
+         */
+        public String apply(String line) {
+            if (filter != null && (!line.contains(filterLiteral) || !filter.matcher(line).find())) {
+                return null;
+            }
+            if (!line.startsWith(patternPrefix)) {
+                return null;
+            }
+            Matcher matcher = pattern.matcher(line);
+            if (!matcher.matches()) {
+                return null;
+            }
+            // The match is the whole line, so the substitution is expanded once without searching again
+            StringBuilder result = new StringBuilder(substitution.length() + line.length());
+            matcher.appendReplacement(result, substitution);
+            return result.toString();
+        }
+    }
+}
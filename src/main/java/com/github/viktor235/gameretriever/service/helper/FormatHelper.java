@@ -1,5 +1,7 @@
 package com.github.viktor235.gameretriever.service.helper;
 
+import com.github.viktor235.gameretriever.helper.RateLimiter;
+import com.github.viktor235.gameretriever.model.Job;
 import com.github.viktor235.gameretriever.model.PlatformStats;
 import com.github.viktor235.gameretriever.model.entity.Platform;
 import com.github.viktor235.gameretriever.shell.ShellHelper;
@@ -7,6 +9,10 @@ import lombok.RequiredArgsConstructor;
 import org.jline.utils.AttributedStyle;
 import org.springframework.stereotype.Controller;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -49,8 +55,68 @@ public class FormatHelper {
         if (stats.gameCount() == 0)
             return header;
         String platformStats = stats.platformStats().stream()
-                .map(p -> "- %s: %d games".formatted(p.name(), p.gameCount()))
+                .map(p -> "- %s: %d games%s".formatted(p.name(), p.gameCount(), getSyncInfo(p)))
                 .collect(Collectors.joining("\n"));
         return "%sDetails:%n%s%n".formatted(header, platformStats);
     }
+
+    private String getSyncInfo(PlatformStats.Platform platform) {
+        if (platform.syncedAt() == null) {
+            return "";
+        }
+        LocalDateTime syncedAt = platform.syncedAt().atZone(ZoneId.systemDefault()).toLocalDateTime()
+                .truncatedTo(ChronoUnit.SECONDS);
+        return platform.syncDuration() == null
+                ? ", updated %s".formatted(syncedAt)
+                : ", updated %s in %s".formatted(syncedAt,
+                platform.syncDuration().truncatedTo(ChronoUnit.SECONDS).toString().substring(2).toLowerCase());
+    }
+
+    public String getThrottlingStats(RateLimiter.Stats stats) {
+        if (stats.throttledCalls() == 0) {
+            return "IGDB requests: %d, no throttling%n".formatted(stats.calls());
+        }
+        return "IGDB requests: %d, throttled: %d, waited for a permit %d ms in total (max %d ms)%n".formatted(
+                stats.calls(), stats.throttledCalls(), stats.totalWaitMillis(), stats.maxWaitMillis());
+    }
+
+    public String getJobList(List<Job> jobs) {
+        String header = "Jobs (%d):%n".formatted(jobs.size());
+        if (jobs.isEmpty()) {
+            return header + "Nothing to show\n";
+        }
+        return jobs.stream()
+                .map(j -> "%s %s [%s]%s".formatted(
+                        shellHelper.getColored("#" + j.getId() + ".", AttributedStyle.BRIGHT),
+                        j.getName(),
+                        getJobStatus(j.getStatus()),
+                        j.getMessage() != null ? " " + j.getMessage() : ""))
+                .collect(Collectors.joining("\n", header, "\n"));
+    }
+
+    public String getJob(Job job) {
+        Duration duration = job.getDuration();
+        return """
+                Job #%d: %s
+                Status: %s
+                Progress: %s
+                Submitted: %s
+                Duration: %s
+                """.formatted(
+                job.getId(), job.getName(),
+                getJobStatus(job.getStatus()),
+                job.getMessage() != null ? job.getMessage() : "-",
+                job.getSubmittedAt().atZone(ZoneId.systemDefault()).toLocalDateTime().truncatedTo(ChronoUnit.SECONDS),
+                duration != null ? duration.truncatedTo(ChronoUnit.SECONDS).toString().substring(2).toLowerCase() : "-");
+    }
+
+    private String getJobStatus(Job.Status status) {
+        int color = switch (status) {
+            case QUEUED, RUNNING, CANCELING -> ShellHelper.INFO_COLOR;
+            case SUCCEEDED -> ShellHelper.SUCCESS_COLOR;
+            case FAILED -> ShellHelper.ERROR_COLOR;
+            case CANCELED -> ShellHelper.WARNING_COLOR;
+        };
+        return shellHelper.getColored(status.name().toLowerCase(), color);
+    }
 }
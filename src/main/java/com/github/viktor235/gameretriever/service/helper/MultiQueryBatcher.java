@@ -0,0 +1,102 @@
+package com.github.viktor235.gameretriever.service.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Packs independent queries into batch requests. Queries are sent at once while there is a free batch request slot.
+ * When all slots are busy, queries are accumulated and sent together by the next batch request, so batching
+ * grows with load and never delays a single caller
+ *
+ * @param <R> type of a single query result
+ */
+public class MultiQueryBatcher<R> {
+
+    private final int maxBatchSize;
+    private final int maxInFlight;
+    private final Function<List<Query>, List<R>> batchRequest;
+    private final ExecutorService executor;
+
+    /**
+     * Guarded by <code>this</code>
+     */
+    private final List<PendingQuery<R>> pending = new ArrayList<>();
+    private int inFlight;
+
+    /**
+     * @param maxBatchSize max count of queries in one batch request
+     * @param maxInFlight  max count of batch requests running at the same time
+     * @param batchRequest function to run a batch request. Returns results in the same order as queries
+     */
+    public MultiQueryBatcher(int maxBatchSize, int maxInFlight, Function<List<Query>, List<R>> batchRequest) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxInFlight = maxInFlight;
+        this.batchRequest = batchRequest;
+        this.executor = Executors.newFixedThreadPool(maxInFlight, r -> {
+            Thread thread = new Thread(r, "multiquery-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<R> submit(String endpoint, String query) {
+        PendingQuery<R> pendingQuery = new PendingQuery<>(new Query(endpoint, query), new CompletableFuture<>());
+        synchronized (this) {
+            pending.add(pendingQuery);
+            if (inFlight < maxInFlight) {
+                inFlight++;
+                executor.execute(this::sendBatches);
+            }
+        }
+        return pendingQuery.result();
+    }
+
+    private void sendBatches() {
+        while (true) {
+            List<PendingQuery<R>> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    inFlight--;
+                    return;
+                }
+                List<PendingQuery<R>> head = pending.subList(0, Math.min(maxBatchSize, pending.size()));
+                batch = new ArrayList<>(head);
+                head.clear();
+            }
+            send(batch);
+        }
+    }
+
+    private void send(List<PendingQuery<R>> batch) {
+        try {
+            List<R> results = batchRequest.apply(batch.stream()
+                    .map(PendingQuery::query)
+                    .toList());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(results.get(i));
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(q -> q.result().completeExceptionally(e));
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public record Query(
+            String endpoint,
+            String query
+    ) {
+    }
+
+    private record PendingQuery<R>(
+            Query query,
+            CompletableFuture<R> result
+    ) {
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.viktor235.gameretriever.helper;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+/**
+ * Converters skip lines without the prefix, so the prefix must never be longer than the text every match starts with
+ */
+class RegexLiteralsTest {
+
+    /**
+     * @return regex, expected prefix, line matching the regex
+     */
+    static Stream<Arguments> regexes() {
+        return Stream.of(
+                // Plain literals and escaped metacharacters
+                arguments("INSERT INTO GAME \\(ID\\) VALUES \\((?<id>\\d+)\\);", "INSERT INTO GAME (ID) VALUES (",
+                        "INSERT INTO GAME (ID) VALUES (1);"),
+                arguments("^UPDATE GAME SET .*", "UPDATE GAME SET ", "UPDATE GAME SET NAME = 'Game'"),
+                arguments("a\\(b\\)", "a(b)", "a(b)"),
+                arguments("\\.\\*", ".*", ".*"),
+                arguments("ab$", "ab", "ab"),
+                arguments("^", "", ""),
+                // Escapes with a special meaning
+                arguments("\\d+ rows", "", "12 rows"),
+                arguments("ID\\t\\d", "ID", "ID\t1"),
+                arguments("(a)\\1", "", "aa"),
+                // Quotes
+                arguments("\\QINSERT INTO GAME (ID)\\E VALUES .*", "INSERT INTO GAME (ID) VALUES ",
+                        "INSERT INTO GAME (ID) VALUES (1)"),
+                arguments("\\Qa.b\\E*c", "a.", "a.c"),
+                arguments("\\Qunterminated.", "unterminated.", "unterminated."),
+                arguments("\\Q|\\Eabc", "|abc", "|abc"),
+                // Quantified last character
+                arguments("GAMES?", "GAME", "GAME"),
+                arguments("ab+c", "a", "abbc"),
+                arguments("ab{0,2}c", "a", "ac"),
+                arguments("abc*?", "ab", "ab"),
+                arguments("ab*+c", "a", "ac"),
+                arguments("\\.?x", "", "x"),
+                // Alternation
+                arguments("INSERT|UPDATE .*", "", "UPDATE GAME"),
+                arguments("A\\|B|C", "", "C"),
+                arguments("[|]x|y", "", "y"),
+                arguments("a[|]b", "a", "a|b"),
+                arguments("DELETE (FROM|INTO) GAME", "DELETE ", "DELETE INTO GAME"),
+                // Groups and inline flags
+                arguments("a(?>bc)d", "a", "abcd"),
+                arguments("(?i)insert .*", "", "INSERT INTO GAME"),
+                arguments("INSERT (?i)into .*", "INSERT ", "INSERT INTO GAME")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("regexes")
+    void prefix(String regex, String expectedPrefix, String matchingLine) {
+        assertTrue(Pattern.compile(regex).matcher(matchingLine).matches(), "Test line must match the regex");
+
+        String prefix = RegexLiterals.prefix(regex);
+
+        assertEquals(expectedPrefix, prefix);
+        assertTrue(matchingLine.startsWith(prefix));
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.viktor235.gameretriever.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.viktor235.gameretriever.repository.ExportRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Generates changelogs of an in-memory H2 DB and applies them to empty DBs
+ */
+class LiquibaseServiceTest {
+
+    private static final String SCHEMA = "GAME_RETRIEVER";
+
+    @TempDir
+    Path dir;
+
+    private final List<JdbcTemplate> dbs = new ArrayList<>();
+    private JdbcTemplate source;
+    private LiquibaseService liquibaseService;
+
+    @BeforeEach
+    void setUp() {
+        source = createDb();
+        ExportRepository exportRepository = new ExportRepository(source);
+        ReflectionTestUtils.setField(exportRepository, "schema", SCHEMA);
+        ExportService exportService = new ExportService(exportRepository, new ObjectMapper());
+        liquibaseService = new LiquibaseService(exportRepository, exportService);
+        ReflectionTestUtils.setField(liquibaseService, "batchSize", 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dbs.forEach(db -> db.execute("SHUTDOWN"));
+    }
+
+    @Test
+    void bulkChangelogLoadsSameDataAsInserts() {
+        source.update("INSERT INTO GAME_RETRIEVER.PLATFORM VALUES (1, TRUE, 'Empty short name', '')");
+        source.update("INSERT INTO GAME_RETRIEVER.PLATFORM VALUES (2, FALSE, ' Spaced ', NULL)");
+        source.update("INSERT INTO GAME_RETRIEVER.PLATFORM VALUES (3, TRUE, 'Comma, \"quote\"', 'Line\nbreak')");
+        source.update("INSERT INTO GAME_RETRIEVER.GAME VALUES (10, '', 'Game')");
+        source.update("INSERT INTO GAME_RETRIEVER.GAME VALUES (11, NULL, 'It''s')");
+        source.update("INSERT INTO GAME_RETRIEVER.GAME VALUES (12, '  ', 'Tab\t')");
+        source.update("INSERT INTO GAME_RETRIEVER.GAME_PLATFORM VALUES (10, 1)");
+        source.update("INSERT INTO GAME_RETRIEVER.GAME_PLATFORM VALUES (11, 2)");
+
+        JdbcTemplate inserted = apply(generate("inserts/changelog.h2.sql", false, false), createDb());
+        JdbcTemplate bulkLoaded = apply(generate("bulk/changelog.h2.sql", true, false), createDb());
+
+        for (String table : ExportRepository.TABLES) {
+            assertEquals(rows(source, table), rows(inserted, table), table);
+            assertEquals(rows(source, table), rows(bulkLoaded, table), table);
+        }
+    }
+
+    /**
+     * Keys 1-5 are exported, then the first key and a key in the middle are deleted, keys before the first and after
+     * the last are added, a key in the middle and the last one are changed
+     */
+    @Test
+    void incrementalChangelogHasChangesSincePreviousExport() throws IOException {
+        source.update("INSERT INTO GAME_RETRIEVER.PLATFORM VALUES (10, TRUE, 'Platform 10', 'P10')");
+        source.update("INSERT INTO GAME_RETRIEVER.PLATFORM VALUES (11, TRUE, 'Platform 11', 'P11')");
+        for (int id = 1; id <= 5; id++) {
+            source.update("INSERT INTO GAME_RETRIEVER.GAME VALUES (?, NULL, ?)", id, "Game " + id);
+        }
+        source.update("INSERT INTO GAME_RETRIEVER.GAME_PLATFORM VALUES (1, 10), (2, 10), (5, 10)");
+        JdbcTemplate target = apply(generate("changelog.h2.sql", false, false), createDb());
+
+        source.update("DELETE FROM GAME_RETRIEVER.GAME_PLATFORM WHERE GAME_ID IN (1, 5)");
+        source.update("DELETE FROM GAME_RETRIEVER.GAME WHERE ID IN (1, 4)");
+        source.update("INSERT INTO GAME_RETRIEVER.GAME VALUES (0, NULL, 'Game 0'), (6, NULL, 'Game 6')");
+        source.update("UPDATE GAME_RETRIEVER.GAME SET NAME = NAME || ' changed' WHERE ID IN (3, 5)");
+        source.update("INSERT INTO GAME_RETRIEVER.GAME_PLATFORM VALUES (2, 11)");
+        Path changelog = generate("changelog.h2.sql", false, true);
+
+        assertEquals(List.of(
+                "INSERT INTO GAME (ID, INFO_LINK, NAME) VALUES (0, NULL, 'Game 0');",
+                "UPDATE GAME SET INFO_LINK = NULL, NAME = 'Game 3 changed' WHERE ID = 3;",
+                "UPDATE GAME SET INFO_LINK = NULL, NAME = 'Game 5 changed' WHERE ID = 5;",
+                "INSERT INTO GAME (ID, INFO_LINK, NAME) VALUES (6, NULL, 'Game 6');",
+                "INSERT INTO GAME_PLATFORM (GAME_ID, PLATFORM_ID) VALUES (2, 11);",
+                "DELETE FROM GAME_PLATFORM WHERE GAME_ID = 1 AND PLATFORM_ID = 10;",
+                "DELETE FROM GAME_PLATFORM WHERE GAME_ID = 5 AND PLATFORM_ID = 10;",
+                "DELETE FROM GAME WHERE ID = 1;",
+                "DELETE FROM GAME WHERE ID = 4;"
+        ), statements(changelog));
+        apply(changelog, target);
+        for (String table : ExportRepository.TABLES) {
+            assertEquals(rows(source, table), rows(target, table), table);
+        }
+
+        assertEquals(List.of(), statements(generate("changelog.h2.sql", false, true)));
+    }
+
+    private Path generate(String changelog, boolean bulk, boolean incremental) {
+        Path file = dir.resolve(changelog);
+        ReflectionTestUtils.setField(liquibaseService, "changelogFile", file.toString());
+        ReflectionTestUtils.setField(liquibaseService, "bulk", bulk);
+        liquibaseService.generateDataChangelog(incremental, progress -> {
+        });
+        return file;
+    }
+
+    /**
+     * @return changelog lines without comments
+     */
+    private static List<String> statements(Path changelog) throws IOException {
+        try (Stream<String> lines = Files.lines(changelog, Charset.defaultCharset())) {
+            return lines
+                    .filter(line -> !line.isBlank() && !line.startsWith("--"))
+                    .toList();
+        }
+    }
+
+    private JdbcTemplate apply(Path changelog, JdbcTemplate target) {
+        target.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET SCHEMA " + SCHEMA);
+            }
+            ScriptUtils.executeSqlScript(connection, new FileSystemResource(changelog));
+            return null;
+        });
+        return target;
+    }
+
+    private static List<Map<String, Object>> rows(JdbcTemplate db, String table) {
+        return db.queryForList("SELECT * FROM %s.%s ORDER BY 1, 2".formatted(SCHEMA, table));
+    }
+
+    private JdbcTemplate createDb() {
+        JdbcTemplate db = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1".formatted(UUID.randomUUID()), "sa", ""));
+        dbs.add(db);
+        db.execute("CREATE SCHEMA " + SCHEMA);
+        db.execute("""
+                CREATE TABLE GAME_RETRIEVER.PLATFORM (
+                    ID BIGINT NOT NULL PRIMARY KEY,
+                    ACTIVE BOOLEAN NOT NULL,
+                    NAME VARCHAR(255) NOT NULL,
+                    SHORT_NAME VARCHAR(255)
+                )""");
+        db.execute("""
+                CREATE TABLE GAME_RETRIEVER.GAME (
+                    ID BIGINT NOT NULL PRIMARY KEY,
+                    INFO_LINK VARCHAR(255),
+                    NAME VARCHAR(255) NOT NULL
+                )""");
+        db.execute("""
+                CREATE TABLE GAME_RETRIEVER.GAME_PLATFORM (
+                    GAME_ID BIGINT NOT NULL,
+                    PLATFORM_ID BIGINT NOT NULL,
+                    PRIMARY KEY (GAME_ID, PLATFORM_ID)
+                )""");
+        return db;
+    }
+}